@@ -0,0 +1,242 @@
+package hashmap;
+
+import java.util.*;
+
+/**
+ *  An open-addressing hash table. Keys and values are kept in two parallel
+ *  arrays instead of bucket collections, so an entry costs no Node and no
+ *  list node, and a lookup scans neighbouring array slots rather than
+ *  chasing pointers. A key that collides takes the next free slot
+ *  (linear probing).
+ *  remove() uses backward-shift deletion: the entries after the removed one
+ *  are moved back into the hole when their home slot allows it, so the
+ *  table never holds tombstones and lookups stay as short as after inserts.
+ *
+ *  Assumes null keys will never be inserted, and does not resize down upon remove().
+ *  @author Li Yanzhuo
+ */
+public class MyHashMapLinearProbing<K, V> implements Map61B<K, V> {
+
+    /* Instance Variables */
+    private K[] keys;
+    private V[] values;
+    private int n; // number of items(key-value pairs)
+    private int m; // size of the hash table, a power of two
+    private static final int initialSize = 16;
+    private double maxLoadFactor = 0.75;
+
+    /** Constructors */
+    public MyHashMapLinearProbing() {
+        this(initialSize);
+    }
+
+    public MyHashMapLinearProbing(int initialSize) {
+        this(initialSize, 0.75);
+    }
+
+    /**
+     * MyHashMapLinearProbing constructor that creates backing arrays of at
+     * least initialSize slots, rounded up to a power of two.
+     * The load factor (# items / # slots) should always be <= loadFactor
+     *
+     * @param initialSize initial size of backing arrays
+     * @param maxLoad maximum load factor, below 1
+     */
+    public MyHashMapLinearProbing(int initialSize, double maxLoad) {
+        if (maxLoad <= 0 || maxLoad >= 1) {
+            throw new IllegalArgumentException("maxLoad must be between 0 and 1");
+        }
+        this.maxLoadFactor = maxLoad;
+        this.m = tableSizeFor(initialSize);
+        createTable(m);
+    }
+
+    private static int tableSizeFor(int size) {
+        int m = 1;
+        while (m < size) {
+            m <<= 1;
+        }
+        return m;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void createTable(int tableSize) {
+        keys = (K[]) new Object[tableSize];
+        values = (V[]) new Object[tableSize];
+    }
+
+    public void clear() {
+        this.n = 0;
+        this.m = initialSize;
+        createTable(m);
+    }
+
+    /** The same spreading as MyHashMap, so both tables see the same slots. */
+    private int hash(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12) ^ (h >>> 7) ^ (h >>> 4);
+        return h & (m - 1);
+    }
+
+    /** Returns the slot holding key, or -1 if it is not in the table. */
+    private int indexOf(K key) {
+        for (int i = hash(key); keys[i] != null; i = (i + 1) & (m - 1)) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true if this map contains a mapping for the specified key. */
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or null if this
+     * map contains no mapping for the key.
+     */
+    public V get(K key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    /** Returns the number of key-value mappings in this map. */
+    public int size() {
+        return n;
+    }
+
+    private void resize(int capacity) {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        this.m = capacity;
+        createTable(m);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                // every key is distinct, so only a free slot has to be found
+                int i = hash(oldKeys[j]);
+                while (keys[i] != null) {
+                    i = (i + 1) & (m - 1);
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key,
+     * the old value is replaced.
+     */
+    public void put(K key, V value) {
+        if (key == null) throw new IllegalArgumentException("first argument to put() is null");
+
+        if ((double) (n + 1) / m > this.maxLoadFactor) {
+            resize(this.m * 2);
+        }
+
+        int i = hash(key);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & (m - 1);
+        }
+        keys[i] = key;
+        values[i] = value;
+        this.n++;
+    }
+
+    /** Returns a Set view of the keys contained in this map. */
+    public Set<K> keySet() {
+        Set<K> keySet = new HashSet<>();
+        for (K key : this) {
+            keySet.add(key);
+        }
+        return keySet;
+    }
+
+    public V remove(K key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        V value = values[i];
+        deleteSlot(i);
+        return value;
+    }
+
+    /**
+     * Removes the entry for the specified key only if it is currently mapped to
+     * the specified value.
+     */
+    public V remove(K key, V value) {
+        int i = indexOf(key);
+        if (i < 0 || !Objects.equals(values[i], value)) {
+            return null;
+        }
+        deleteSlot(i);
+        return value;
+    }
+
+    /**
+     * Empties slot i by backward shift: each following entry of the same run
+     * moves back into the hole unless its home slot lies cyclically in
+     * (hole, slot], where moving it would put it before its home.
+     */
+    private void deleteSlot(int i) {
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & (m - 1);
+            if (keys[j] == null) {
+                break;
+            }
+            int home = hash(keys[j]);
+            boolean homeInRange = hole <= j
+                    ? hole < home && home <= j
+                    : hole < home || home <= j;
+            if (!homeInRange) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        this.n--;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new ProbingIterator();
+    }
+
+    /** Iterates over the slots of the key array in order. */
+    private class ProbingIterator implements Iterator<K> {
+        private int next = advance(0);
+
+        private int advance(int i) {
+            while (i < keys.length && keys[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more keys");
+            }
+            K key = keys[next];
+            next = advance(next + 1);
+            return key;
+        }
+    }
+}
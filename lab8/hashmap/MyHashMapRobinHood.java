@@ -0,0 +1,299 @@
+package hashmap;
+
+import java.util.*;
+
+/**
+ *  An open-addressing hash table with Robin Hood hashing. As in
+ *  MyHashMapLinearProbing, keys and values are kept in parallel arrays and
+ *  collisions take the next slots, but every slot also records its probe
+ *  distance, the number of slots between the entry and its home slot.
+ *  When an insert meets an entry that is closer to its home than the new
+ *  one is, the new entry takes its slot and the displaced entry is carried
+ *  further, so the probe
+ *  distances stay even: the table works at high load factors such as 0.9
+ *  without the long runs linear probing builds up, and a lookup can stop
+ *  as soon as it passes a slot whose distance is shorter than its own.
+ *  remove() uses backward-shift deletion, which keeps the distances just as low.
+ *  The probe distances can be inspected with maxProbeLength(),
+ *  meanProbeLength() and probeLengthHistogram().
+ *
+ *  Assumes null keys will never be inserted, and does not resize down upon remove().
+ *  @author Li Yanzhuo
+ */
+public class MyHashMapRobinHood<K, V> implements Map61B<K, V> {
+
+    /* Instance Variables */
+    private K[] keys;
+    private V[] values;
+    private int[] dist; // probe distance of each slot, -1 when empty
+    private int n; // number of items(key-value pairs)
+    private int m; // size of the hash table, a power of two
+    private static final int initialSize = 16;
+    private double maxLoadFactor = 0.9;
+
+    /** Constructors */
+    public MyHashMapRobinHood() {
+        this(initialSize);
+    }
+
+    public MyHashMapRobinHood(int initialSize) {
+        this(initialSize, 0.9);
+    }
+
+    /**
+     * MyHashMapRobinHood constructor that creates backing arrays of at
+     * least initialSize slots, rounded up to a power of two.
+     * The load factor (# items / # slots) should always be <= loadFactor
+     *
+     * @param initialSize initial size of backing arrays
+     * @param maxLoad maximum load factor, below 1
+     */
+    public MyHashMapRobinHood(int initialSize, double maxLoad) {
+        if (maxLoad <= 0 || maxLoad >= 1) {
+            throw new IllegalArgumentException("maxLoad must be between 0 and 1");
+        }
+        this.maxLoadFactor = maxLoad;
+        int size = 1;
+        while (size < initialSize) {
+            size <<= 1;
+        }
+        this.m = size;
+        createTable(m);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void createTable(int tableSize) {
+        keys = (K[]) new Object[tableSize];
+        values = (V[]) new Object[tableSize];
+        dist = new int[tableSize];
+        Arrays.fill(dist, -1);
+    }
+
+    public void clear() {
+        this.n = 0;
+        this.m = initialSize;
+        createTable(m);
+    }
+
+    /** The same spreading as MyHashMap, so both tables see the same slots. */
+    private int hash(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12) ^ (h >>> 7) ^ (h >>> 4);
+        return h & (m - 1);
+    }
+
+    /**
+     * Returns the slot holding key, or -1 if it is not in the table. The
+     * search stops at an empty slot or at an entry closer to its home than
+     * key would be there, since key would have displaced that entry.
+     */
+    private int indexOf(K key) {
+        int i = hash(key);
+        for (int d = 0; dist[i] >= d; d++) {
+            if (dist[i] == d && keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & (m - 1);
+        }
+        return -1;
+    }
+
+    /** Returns true if this map contains a mapping for the specified key. */
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or null if this
+     * map contains no mapping for the key.
+     */
+    public V get(K key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    /** Returns the number of key-value mappings in this map. */
+    public int size() {
+        return n;
+    }
+
+    private void resize(int capacity) {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        this.m = capacity;
+        createTable(m);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                insert(oldKeys[j], oldValues[j]);
+            }
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key,
+     * the old value is replaced.
+     */
+    public void put(K key, V value) {
+        if (key == null) throw new IllegalArgumentException("first argument to put() is null");
+
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        if ((double) (n + 1) / m > this.maxLoadFactor) {
+            resize(this.m * 2);
+        }
+        insert(key, value);
+        this.n++;
+    }
+
+    /**
+     * Places a key that is not in the table. Whenever the entry being
+     * placed is further from its home than the resident of a slot, they
+     * swap, and the resident is placed further on in turn.
+     */
+    private void insert(K key, V value) {
+        int i = hash(key);
+        int d = 0;
+        while (dist[i] >= 0) {
+            if (dist[i] < d) {
+                K k = keys[i];
+                V v = values[i];
+                int e = dist[i];
+                keys[i] = key;
+                values[i] = value;
+                dist[i] = d;
+                key = k;
+                value = v;
+                d = e;
+            }
+            i = (i + 1) & (m - 1);
+            d++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        dist[i] = d;
+    }
+
+    /** Returns a Set view of the keys contained in this map. */
+    public Set<K> keySet() {
+        Set<K> keySet = new HashSet<>();
+        for (K key : this) {
+            keySet.add(key);
+        }
+        return keySet;
+    }
+
+    public V remove(K key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        V value = values[i];
+        deleteSlot(i);
+        return value;
+    }
+
+    /**
+     * Removes the entry for the specified key only if it is currently mapped to
+     * the specified value.
+     */
+    public V remove(K key, V value) {
+        int i = indexOf(key);
+        if (i < 0 || !Objects.equals(values[i], value)) {
+            return null;
+        }
+        deleteSlot(i);
+        return value;
+    }
+
+    /**
+     * Empties slot i by backward shift: the following entries move back one
+     * slot each, one step closer to home, until an empty slot or an entry
+     * already in its home slot.
+     */
+    private void deleteSlot(int i) {
+        int j = (i + 1) & (m - 1);
+        while (dist[j] > 0) {
+            keys[i] = keys[j];
+            values[i] = values[j];
+            dist[i] = dist[j] - 1;
+            i = j;
+            j = (j + 1) & (m - 1);
+        }
+        keys[i] = null;
+        values[i] = null;
+        dist[i] = -1;
+        this.n--;
+    }
+
+    /* Probe-length statistics. The probe length of an entry is its distance
+     * from its home slot: 0 when it is in it. A lookup of the entry reads
+     * probe length + 1 slots. */
+
+    /** Returns the largest probe length of the entries, 0 when empty. */
+    public int maxProbeLength() {
+        int max = 0;
+        for (int d : dist) {
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    /** Returns the mean probe length of the entries, 0 when empty. */
+    public double meanProbeLength() {
+        if (n == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int d : dist) {
+            if (d > 0) {
+                total += d;
+            }
+        }
+        return (double) total / n;
+    }
+
+    /** Returns the number of entries with each probe length, indexed by length. */
+    public int[] probeLengthHistogram() {
+        int[] histogram = new int[maxProbeLength() + 1];
+        for (int d : dist) {
+            if (d >= 0) {
+                histogram[d]++;
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new ProbingIterator();
+    }
+
+    /** Iterates over the slots of the key array in order. */
+    private class ProbingIterator implements Iterator<K> {
+        private int next = advance(0);
+
+        private int advance(int i) {
+            while (i < keys.length && keys[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more keys");
+            }
+            K key = keys[next];
+            next = advance(next + 1);
+            return key;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hashmap;
+
+import org.junit.Test;
+
+/** Tests of the open-addressing MyHashMapLinearProbing. */
+public class TestMyHashMapLinearProbing {
+
+    @Test
+    public void sanityTests() {
+        TestMyHashMap.sanityClearTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.sanityContainsKeyTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.sanityGetTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.sanitySizeTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.sanityPutTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.sanityKeySetTest(new MyHashMapLinearProbing<>());
+        TestMyHashMap.functionalityTest(new MyHashMapLinearProbing<>(),
+                new MyHashMapLinearProbing<>());
+    }
+
+    @Test
+    public void testBackwardShiftDeletion() {
+        TestMyHashMap.backwardShiftDeletionTest(new MyHashMapLinearProbing<>(16));
+    }
+
+    @Test
+    public void randomizedTest() {
+        TestMyHashMap.randomizedTest(new MyHashMapLinearProbing<>(4, 0.9));
+    }
+}
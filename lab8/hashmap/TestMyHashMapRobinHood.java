@@ -0,0 +1,130 @@
+package hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import hashmap.TestMyHashMap.Collider;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Tests of the Robin Hood hashing MyHashMapRobinHood. */
+public class TestMyHashMapRobinHood {
+
+    @Test
+    public void sanityTests() {
+        TestMyHashMap.sanityClearTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.sanityContainsKeyTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.sanityGetTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.sanitySizeTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.sanityPutTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.sanityKeySetTest(new MyHashMapRobinHood<>());
+        TestMyHashMap.functionalityTest(new MyHashMapRobinHood<>(),
+                new MyHashMapRobinHood<>());
+    }
+
+    @Test
+    public void testBackwardShiftDeletion() {
+        TestMyHashMap.backwardShiftDeletionTest(new MyHashMapRobinHood<>(16));
+    }
+
+    @Test
+    public void randomizedTest() {
+        TestMyHashMap.randomizedTest(new MyHashMapRobinHood<>(4, 0.95));
+    }
+
+    /** Puts A and B with home 0, C with home 1 and then D with home 0, in a
+     *  table of 16 slots: A, B, C take slots 0, 1, 2. D reaches slot 2 two
+     *  slots from home, while C there is one slot from home, so D takes the
+     *  slot and C moves on to slot 3. Linear probing would leave D at three. */
+    private static MyHashMapRobinHood<Collider, Integer> displacedRun() {
+        MyHashMapRobinHood<Collider, Integer> q = new MyHashMapRobinHood<>(16);
+        q.put(new Collider(0, 0), 0);
+        q.put(new Collider(1, 0), 1);
+        q.put(new Collider(2, 1), 2);
+        q.put(new Collider(3, 0), 3);
+        return q;
+    }
+
+    @Test
+    public void displacementOnInsertTest() {
+        MyHashMapRobinHood<Collider, Integer> q = displacedRun();
+        // A 0, B 1, then D and C both 2 from home
+        assertArrayEquals(new int[] {1, 1, 2}, q.probeLengthHistogram());
+        assertEquals(2, q.maxProbeLength());
+        assertEquals(5.0 / 4, q.meanProbeLength(), 1e-9);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), q.get(new Collider(i, i == 2 ? 1 : 0)));
+        }
+        // absent keys of the same homes are not found
+        assertNull(q.get(new Collider(4, 0)));
+        assertNull(q.get(new Collider(4, 1)));
+    }
+
+    @Test
+    public void getAfterRemoveInMiddleOfRunTest() {
+        MyHashMapRobinHood<Collider, Integer> q = displacedRun();
+        // removing B from slot 1 shifts D and C back one slot each
+        assertEquals(Integer.valueOf(1), q.remove(new Collider(1, 0)));
+        assertEquals(3, q.size());
+        assertNull(q.get(new Collider(1, 0)));
+        assertEquals(Integer.valueOf(0), q.get(new Collider(0, 0)));
+        assertEquals(Integer.valueOf(2), q.get(new Collider(2, 1)));
+        assertEquals(Integer.valueOf(3), q.get(new Collider(3, 0)));
+        assertArrayEquals(new int[] {1, 2}, q.probeLengthHistogram());
+        assertEquals(2.0 / 3, q.meanProbeLength(), 1e-9);
+
+        // removing A shifts D and C back into their home slots
+        assertEquals(Integer.valueOf(0), q.remove(new Collider(0, 0)));
+        assertEquals(Integer.valueOf(3), q.get(new Collider(3, 0)));
+        assertEquals(Integer.valueOf(2), q.get(new Collider(2, 1)));
+        assertArrayEquals(new int[] {2}, q.probeLengthHistogram());
+        assertEquals(0, q.maxProbeLength());
+    }
+
+    /** Ten keys with the same home, wrapping around the end of the table,
+     *  are one slot further each: probe lengths 0 to 9. */
+    @Test
+    public void collidingProbeLengthTest() {
+        MyHashMapRobinHood<Collider, Integer> q = new MyHashMapRobinHood<>(16);
+        assertEquals(0, q.maxProbeLength());
+        assertEquals(0, q.meanProbeLength(), 0);
+        for (int i = 0; i < 10; i++) {
+            q.put(new Collider(i, 12), i);
+        }
+        assertEquals(9, q.maxProbeLength());
+        assertEquals(4.5, q.meanProbeLength(), 1e-9);
+        int[] ones = new int[10];
+        Arrays.fill(ones, 1);
+        assertArrayEquals(ones, q.probeLengthHistogram());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), q.get(new Collider(i, 12)));
+        }
+        assertEquals(Integer.valueOf(5), q.remove(new Collider(5, 12)));
+        assertEquals(8, q.maxProbeLength());
+        assertEquals(4.0, q.meanProbeLength(), 1e-9);
+    }
+
+    /** At load factor 0.9 the probe lengths stay short, and the statistics agree. */
+    @Test
+    public void probeLengthTest() {
+        MyHashMapRobinHood<String, Integer> q = new MyHashMapRobinHood<>(1 << 17, 0.9);
+        int size = (int) ((1 << 17) * 0.9);
+        Random random = new Random(61);
+        for (int i = 0; i < size; i++) {
+            q.put(Long.toString(random.nextLong(), 36), i);
+        }
+        int[] histogram = q.probeLengthHistogram();
+        assertEquals(q.maxProbeLength() + 1, histogram.length);
+        long count = 0;
+        long total = 0;
+        for (int d = 0; d < histogram.length; d++) {
+            count += histogram[d];
+            total += (long) d * histogram[d];
+        }
+        assertEquals(q.size(), count);
+        assertEquals((double) total / count, q.meanProbeLength(), 1e-9);
+        assertTrue(q.meanProbeLength() < 5);
+        assertTrue(q.maxProbeLength() < 64);
+    }
+}
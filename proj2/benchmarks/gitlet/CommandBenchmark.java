@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Benchmarks of whole gitlet commands on a repository of FILES files with a
+ *  linear history of COMMITS commits and BRANCHES topic branches.
+ *  Commands that change the repository are prepared before every invocation,
+ *  outside of the measured time, so that each one does the same work.
+ *
+ *  @author Li Yanzhuo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+    @Param({"1000"})
+    public int files;
+
+    @Param({"200"})
+    public int commits;
+
+    @Param({"4"})
+    public int branches;
+
+    /** The object database: loose files, packs, or memory, see SyntheticRepository. */
+    @Param({"files", "packed", "memory"})
+    public String backend;
+
+    private File dir;
+    private List<String> names;
+    private String masterHead;
+    private String topicBranch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = SyntheticRepository.init(backend);
+        names = SyntheticRepository.commitFiles(files, 256);
+        SyntheticRepository.linearHistory(names, commits, 2);
+        List<String> topics = SyntheticRepository.branchyHistory("master", branches, commits / 10);
+        topicBranch = topics.get(0);
+        SyntheticRepository.linearHistory(names, commits / 10, 2);
+        masterHead = SyntheticRepository.branchHead("master");
+        SyntheticRepository.storeObjects(backend);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticRepository.delete(dir);
+    }
+
+    /** Before each commit or merge: go back to the prepared master head,
+     *  then stage a change nobody made before. Only the benchmarks that
+     *  take this state pay for the reset. */
+    @State(Scope.Thread)
+    public static class StagedChange {
+        private int invocation;
+
+        @Setup(Level.Invocation)
+        public void prepare(CommandBenchmark repo) {
+            Repository.reset(repo.masterHead);
+            invocation++;
+            String name = repo.names.get(invocation % repo.names.size());
+            Utils.writeContents(Utils.join(Repository.cwd(), name),
+                    "invocation " + invocation + "\n");
+            Repository.add(name);
+        }
+    }
+
+    @Benchmark
+    public void commit(StagedChange change) {
+        SyntheticRepository.commit("benchmark commit");
+    }
+
+    @Benchmark
+    public void merge(StagedChange change) {
+        SyntheticRepository.commit("before merge");
+        Repository.merge(topicBranch);
+    }
+
+    @Benchmark
+    public void status() {
+        Repository.status();
+    }
+
+    @Benchmark
+    public Commit splitPoint() {
+        Commit master = Commit.load(masterHead);
+        Commit topic = Commit.load(SyntheticRepository.branchHead(topicBranch));
+        return Commit.getSplitPoint(master, topic);
+    }
+
+    @Benchmark
+    public void log() {
+        Repository.log();
+    }
+}
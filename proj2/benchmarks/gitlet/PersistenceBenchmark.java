@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Benchmarks of the persistence primitives on a repository of FILES files:
+ *  loading a commit, saving and loading blobs, hashing the working directory,
+ *  and hashing a large binary.
+ *
+ *  @author Li Yanzhuo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"100", "10000"})
+    public int files;
+
+    @Param({"16777216"})
+    public int binarySize;
+
+    /** The object database: loose files, packs, or memory, see SyntheticRepository. */
+    @Param({"files", "packed", "memory"})
+    public String backend;
+
+    private File dir;
+    private String headID;
+    private String blobID;
+    private File smallFile;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = SyntheticRepository.init(backend);
+        SyntheticRepository.commitFiles(files, 256);
+        headID = SyntheticRepository.branchHead("master");
+        smallFile = Utils.join(Repository.cwd(), "file-000000.txt");
+        blobID = new Blob(smallFile).getHashID();
+        binary = Utils.readContents(SyntheticRepository.largeBinary("large.bin", binarySize));
+        SyntheticRepository.storeObjects(backend);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticRepository.delete(dir);
+    }
+
+    @Benchmark
+    public Commit commitLoad() {
+        return Commit.load(headID);
+    }
+
+    @Benchmark
+    public String blobSave() {
+        Blob blob = new Blob(smallFile);
+        blob.save();
+        return blob.getHashID();
+    }
+
+    @Benchmark
+    public Blob blobLoad() {
+        return Blob.load(blobID);
+    }
+
+    @Benchmark
+    public HashMap<String, String> workingDirScan() {
+        return Repository.getWorkingDirFiles();
+    }
+
+    @Benchmark
+    public String sha1LargeBinary() {
+        return Utils.sha1(binary);
+    }
+}
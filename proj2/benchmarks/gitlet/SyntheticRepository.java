@@ -0,0 +1,139 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/** Generators of synthetic gitlet repositories for the benchmarks:
+ *  N files, linear histories of M commits, branchy histories and large binaries.
+ *  Every repository is made in a temporary directory of its own, and the
+ *  commands are pointed at it with Repository.useWorktree. The benchmarks
+ *  delete it again when their trial ends.
+ *
+ *  @author Li Yanzhuo
+ */
+final class SyntheticRepository {
+    private static final Random RANDOM = new Random(61);
+    private static int commitCounter;
+
+    private SyntheticRepository() {
+    }
+
+    /** Create a temporary directory, make it the gitlet worktree and initialize a
+     *  repository in it, with its objects in the given backend (see
+     *  storeObjects). Command output is discarded. */
+    static File init(String backend) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Repository.useWorktree(new Worktree(dir));
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        if (backend.equals("memory")) {
+            ObjectType.useDatabase(new MemoryObjectDatabase());
+        }
+        Repository.init();
+        return dir;
+    }
+
+    /** Delete the repository DIR made by init, with everything in it. */
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /** Once the history is built: with the "packed" backend, move every
+     *  object into a pack, so that the benchmarks read through the
+     *  multi-pack index. "files" keeps loose objects, "memory" has no files. */
+    static void storeObjects(String backend) {
+        if (backend.equals("packed")) {
+            Maintenance.run();
+        }
+    }
+
+    /** Write COUNT text files of about SIZE bytes each to the working directory,
+     *  stage them and commit them. Returns the names of the files. */
+    static List<String> commitFiles(int count, int size) {
+        List<String> names = new ArrayList<>(count);
+        HashMap<String, String> stagingMap = Repository.loadStagingArea();
+        for (int i = 0; i < count; i++) {
+            String name = String.format("file-%06d.txt", i);
+            File file = Utils.join(Repository.cwd(), name);
+            Utils.writeContents(file, randomText(size));
+            Blob blob = new Blob(file);
+            blob.save();
+            stagingMap.put(name, blob.getHashID());
+            names.add(name);
+        }
+        // staged in one write, instead of one index rewrite per add
+        Utils.writeObject(Repository.indexFile(), stagingMap);
+        commit("add " + count + " files");
+        return names;
+    }
+
+    /** Make COMMITS commits on the current branch, each of which rewrites
+     *  FILESPERCOMMIT of the given files. */
+    static void linearHistory(List<String> names, int commits, int filesPerCommit) {
+        for (int c = 0; c < commits; c++) {
+            for (int f = 0; f < filesPerCommit; f++) {
+                String name = names.get(RANDOM.nextInt(names.size()));
+                Utils.writeContents(Utils.join(Repository.cwd(), name), randomText(64));
+                Repository.add(name);
+            }
+            commit("history");
+        }
+    }
+
+    /** Create BRANCHES branches off the current commit, each with COMMITS
+     *  commits touching its own file, and return to the starting branch.
+     *  Returns the names of the new branches. */
+    static List<String> branchyHistory(String fromBranch, int branches, int commits) {
+        List<String> branchNames = new ArrayList<>(branches);
+        for (int b = 0; b < branches; b++) {
+            String branchName = "topic-" + b;
+            Repository.branch(branchName);
+            Repository.checkoutBranch(branchName);
+            for (int c = 0; c < commits; c++) {
+                String name = "topic-" + b + ".txt";
+                Utils.writeContents(Utils.join(Repository.cwd(), name), randomText(64));
+                Repository.add(name);
+                commit(branchName);
+            }
+            Repository.checkoutBranch(fromBranch);
+            branchNames.add(branchName);
+        }
+        return branchNames;
+    }
+
+    /** Write a file of SIZE random bytes, the worst case for hashing and storage. */
+    static File largeBinary(String name, int size) {
+        byte[] content = new byte[size];
+        RANDOM.nextBytes(content);
+        File file = Utils.join(Repository.cwd(), name);
+        Utils.writeContents(file, content);
+        return file;
+    }
+
+    /** Commit the staging area with a unique message, so that two commits
+     *  made in the same second never get the same ID. */
+    static void commit(String message) {
+        commitCounter++;
+        Repository.commit(message + " #" + commitCounter);
+    }
+
+    /** Return the commit ID the given branch points to. */
+    static String branchHead(String branchName) {
+        return Refs.read(Refs.HEADS + branchName);
+    }
+
+    static String randomText(int size) {
+        StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(Long.toHexString(RANDOM.nextLong())).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,232 @@
+package gitlet;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** The result of gitlet blame: for every line of a file in a commit, the
+ *  commit that last changed it.
+ *  The first-parent history is walked back from the commit on the commit
+ *  graph. A commit whose Bloom filter rules the file out, or whose parent
+ *  holds the same blob, is passed without reading any content; only when
+ *  the blob changes are the two versions diffed. The lines not attributed
+ *  yet are kept as ranges of the version being walked, and every diff
+ *  moves them to the parent's line numbers at once: lines in a changed
+ *  block belong to the commit, and the ranges around the blocks are only
+ *  shifted. The walk stops when every line is attributed, so an old file
+ *  whose recent changes touched a few lines only goes back as far as the
+ *  oldest line still in use.
+ *  Results are cached in .gitlet/blame per (commit, file name). Blaming a
+ *  later commit stops as soon as it reaches a commit with a cached result,
+ *  so after new commits only the new revisions are diffed. Like the commit
+ *  graph, the cache only holds what the commits already say and can be
+ *  deleted at any time.
+ *
+ *  @author Li Yanzhuo
+ */
+class Blame implements Serializable {
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+
+    /** The distinct commits of the result; lines refers to them by index. */
+    private final ArrayList<String> commitIDs = new ArrayList<>();
+    private final int[] lines;
+    private transient HashMap<String, Integer> commitIndex = new HashMap<>();
+
+    /** Lines [start, start + length) of the version being walked, which are
+     *  lines [target, target + length) of the blamed version. */
+    private static class Range {
+        final int start;
+        final int length;
+        final int target;
+
+        Range(int start, int length, int target) {
+            this.start = start;
+            this.length = length;
+            this.target = target;
+        }
+    }
+
+    private Blame(int lineCount) {
+        this.lines = new int[lineCount];
+    }
+
+    String commitOf(int line) {
+        return commitIDs.get(lines[line]);
+    }
+
+    private void attribute(int line, String commitID) {
+        Integer index = commitIndex.get(commitID);
+        if (index == null) {
+            index = commitIDs.size();
+            commitIDs.add(commitID);
+            commitIndex.put(commitID, index);
+        }
+        lines[line] = index;
+    }
+
+    private void attributeAll(List<Range> pending, String commitID) {
+        for (Range range : pending) {
+            for (int i = 0; i < range.length; i++) {
+                attribute(range.target + i, commitID);
+            }
+        }
+    }
+
+    /** Return the blame of FILENAME in the commit COMMITID, or null if the
+     *  commit does not track the file. */
+    static Blame of(String commitID, String fileName) {
+        Blame cached = loadCache(commitID, fileName);
+        if (cached != null) {
+            return cached;
+        }
+        String blobID = Commit.load(commitID).getBlobID(fileName);
+        if (blobID == null) {
+            return null;
+        }
+        long start = Trace.start();
+        CommitGraph graph = CommitGraph.load();
+        graph.ensure(commitID);
+        graph.save();
+
+        ByteBuffer content = content(blobID);
+        Blame blame = new Blame(new LineDiff.Lines(content).count);
+        List<Range> pending = new ArrayList<>();
+        if (blame.lines.length > 0) {
+            pending.add(new Range(0, blame.lines.length, 0));
+        }
+        String id = commitID;
+        while (!pending.isEmpty()) {
+            Blame known = id.equals(commitID) ? null : loadCache(id, fileName);
+            if (known != null) {
+                for (Range range : pending) {
+                    for (int i = 0; i < range.length; i++) {
+                        blame.attribute(range.target + i, known.commitOf(range.start + i));
+                    }
+                }
+                break;
+            }
+            CommitGraph.Entry entry = graph.get(id);
+            String parentID = entry.firstParentID;
+            if (parentID != null && !entry.mightHaveChanged(fileName)) {
+                id = parentID;
+                continue;
+            }
+            String parentBlobID = parentID == null ? null
+                    : Commit.load(parentID).getBlobID(fileName);
+            if (blobID.equals(parentBlobID)) {
+                id = parentID;
+                continue;
+            }
+            if (parentBlobID == null) {
+                blame.attributeAll(pending, id);
+                break;
+            }
+            ByteBuffer parentContent = content(parentBlobID);
+            pending = blame.carry(pending, LineDiff.changeBlocks(parentContent, content), id);
+            id = parentID;
+            blobID = parentBlobID;
+            content = parentContent;
+        }
+        blame.saveCache(commitID, fileName);
+        Trace.end("blame", start);
+        return blame;
+    }
+
+    /** Attribute the PENDING lines inside the changed blocks of a diff to
+     *  COMMITID, and return the other ones moved to the old side of the
+     *  diff. Both lists are sorted, so they are merged in one pass. */
+    private List<Range> carry(List<Range> pending, List<int[]> blocks, String commitID) {
+        List<Range> carried = new ArrayList<>();
+        int b = 0;
+        for (Range range : pending) {
+            int pos = range.start;
+            int end = range.start + range.length;
+            while (pos < end) {
+                // skip the blocks that end before pos, deletions at pos included
+                while (b < blocks.size() && blocks.get(b)[3] <= pos) {
+                    b++;
+                }
+                int[] block = b < blocks.size() ? blocks.get(b) : null;
+                if (block != null && block[2] <= pos) {
+                    int stop = Math.min(end, block[3]);
+                    for (int line = pos; line < stop; line++) {
+                        attribute(range.target + line - range.start, commitID);
+                    }
+                    pos = stop;
+                } else {
+                    int stop = block == null ? end : Math.min(end, block[2]);
+                    int shift = b == 0 ? 0 : blocks.get(b - 1)[1] - blocks.get(b - 1)[3];
+                    carried.add(new Range(pos + shift, stop - pos,
+                            range.target + pos - range.start));
+                    pos = stop;
+                }
+            }
+        }
+        return carried;
+    }
+
+    private static ByteBuffer content(String blobID) {
+        return ByteBuffer.wrap(Blob.load(blobID).getContent());
+    }
+
+    /** Print every line of CONTENT, the blamed version, with its commit and date. */
+    void print(PrintStream out, ByteBuffer content) {
+        LineDiff.Lines text = new LineDiff.Lines(content);
+        HashMap<String, String> dates = new HashMap<>();
+        for (String commitID : commitIDs) {
+            long timestamp = Commit.load(commitID).getTimestamp();
+            dates.put(commitID, Instant.ofEpochSecond(timestamp)
+                    .atZone(ZoneId.systemDefault()).format(DATE_FORMAT));
+        }
+        int width = String.valueOf(lines.length).length();
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < lines.length; i++) {
+            String commitID = commitOf(i);
+            out.print(commitID.substring(0, 7) + " (" + dates.get(commitID) + " "
+                    + String.format("%" + width + "d", i + 1) + ") ");
+            int length = text.length(i);
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, 2 * buffer.length)];
+            }
+            text.content.get(text.starts[i], buffer, 0, length);
+            out.write(buffer, 0, length);
+            if (!text.endsWithNewline(i)) {
+                out.println();
+            }
+        }
+    }
+
+    /* Cache. */
+
+    private static File cacheFile(String commitID, String fileName) {
+        String key = Utils.sha1(commitID, fileName);
+        return Repository.commonPath("blame", key.substring(0, 2), key);
+    }
+
+    private static Blame loadCache(String commitID, String fileName) {
+        File file = cacheFile(commitID, fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Utils.readObject(file, Blame.class);
+        } catch (IllegalArgumentException e) {
+            // a stale cache entry, recomputed by the caller
+            return null;
+        }
+    }
+
+    private void saveCache(String commitID, String fileName) {
+        File file = cacheFile(commitID, fileName);
+        file.getParentFile().mkdirs();
+        Utils.writeObject(file, this);
+    }
+}
@@ -3,38 +3,107 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**This class represents a Blob that will be stored in a file.
  * Because each blob has a unique hash ID, we will use it
  * as the name of the file which the blob object serialized to.
- * All blob objects are serialized within the BLOB_DIR under the GITLET_DIR.
+ * All blob objects are serialized within the blobs directory of the .gitlet.
  * The first two characters of their hash ID will be used as the subdirectory,
  * to enhance time and space efficiency.
  * It has helper methods to read the blob object from files given its hash ID,
  * and write the blob object into a file to persistent its change.
+ * When blob.chunking is set in the config, the content of a large blob is
+ * stored as content-defined chunks (see Chunker) and the blob file only
+ * holds the list of chunk IDs. The hash ID is the SHA-1 of the content
+ * either way, so chunked and plain blobs of the same file are the same blob.
+ * When blob.largeFiles is set, a large working file is kept in the large
+ * file store instead (see LargeFiles), and its blob is only a pointer.
  *
  * @author Li Yanzhuo
  * */
 public class Blob implements Serializable {
-    static final File BLOB_DIR = Utils.join(Repository.GITLET_DIR, "blobs");
     private String hashID;
     private byte[] content;
+    /* the IDs of the chunks holding the content, null for a plain blob */
+    private String[] chunkIDs;
+    /* whether the content is kept in the large file store */
+    private boolean largeFile;
+    /* the working file of a large file blob, read only when needed */
+    private transient File source;
 
-    /* constructor of the Blob class */
+    /* constructor of the Blob class: a large file is hashed, not read */
     Blob(File file) {
-        this.content = Utils.readContents(file);
+        if (LargeFiles.isLarge(file)) {
+            this.hashID = LargeFiles.hash(file);
+            this.largeFile = true;
+            this.source = file;
+        } else {
+            this.content = Utils.readContents(file);
+            this.hashID = Utils.sha1(this.content);
+        }
+    }
+
+    /* constructor for content built in memory, e.g. merge conflicts */
+    Blob(byte[] content) {
+        this.content = content;
         this.hashID = Utils.sha1(this.content);
     }
 
+    /* constructor of the header written for a chunked blob */
+    private Blob(String hashID, String[] chunkIDs) {
+        this.hashID = hashID;
+        this.chunkIDs = chunkIDs;
+    }
+
+    /* constructor of the pointer written for a large file */
+    private Blob(String hashID) {
+        this.hashID = hashID;
+        this.largeFile = true;
+    }
+
     String getHashID() {
         return this.hashID;
     }
 
+    /* The content of a large file is read from the store on first use. */
     byte[] getContent() {
+        if (this.content == null && this.largeFile) {
+            this.content = this.source != null
+                    ? Utils.readContents(this.source) : LargeFiles.read(this.hashID);
+        }
         return this.content;
     }
 
+    boolean isLargeFile() {
+        return this.largeFile;
+    }
+
+    /* Whether the content is binary: a large file always is, and other
+     * blobs are probed for a NUL byte as git does. */
+    boolean isBinary() {
+        return this.largeFile || LineDiff.isBinary(ByteBuffer.wrap(this.content));
+    }
+
+    boolean isChunked() {
+        return this.chunkIDs != null;
+    }
+
+    /* Returns the chunk IDs of a chunked blob, in content order. */
+    String[] getChunkIDs() {
+        return this.chunkIDs;
+    }
+
+    /* This method checks that the stored hashID matches the content of the blob. */
+    boolean hasValidHashID() {
+        if (this.largeFile) {
+            return this.hashID != null && LargeFiles.contains(this.hashID)
+                    && this.hashID.equals(LargeFiles.sha1(LargeFiles.objectFile(this.hashID)));
+        }
+        return this.hashID != null && this.hashID.equals(Utils.sha1(this.content));
+    }
+
     /**A helper method for merge conflict cases,
      * not very sure how it would work. */
     String getContentAsString() {
@@ -42,37 +111,74 @@ public class Blob implements Serializable {
     }
 
     /**Persistence: a method that writes the blob object into file,
-     * in the subdirectory by its first 2 id numbers - Hash Table. */
+     * in the subdirectory by its first 2 id numbers - Hash Table.
+     * A blob that is already stored is not written again. */
     void save() {
+        long start = Trace.start();
         if (this.hashID == null || hashID.length() < 2) {
             System.out.println("HashID of the blob is shorter than 2.");
             System.exit(0);
         }
-        String firstTwoID = this.hashID.substring(0, 2);
-        File subDir = Utils.join(BLOB_DIR, firstTwoID);
-        subDir.mkdir();
-        File blobFile = Utils.join(subDir, this.hashID);
-        Utils.writeObject(blobFile, this);
+        if (ObjectType.BLOB.freshen(this.hashID)) {
+            // the same content is already stored: only refresh it for the gc grace period
+            Trace.end("save-blob", start);
+            return;
+        }
+        if (this.largeFile) {
+            // the file first, so that a pointer never refers to a missing file
+            LargeFiles.store(this.source, this.hashID);
+            ObjectType.BLOB.writeObject(this.hashID, new Blob(this.hashID));
+        } else if (Config.getBoolean(Config.CHUNKING)
+                && this.content.length >= Config.getLong(Config.CHUNK_THRESHOLD)) {
+            // the chunks first, so that a blob file never refers to missing chunks
+            String[] chunks = Chunker.save(this.content);
+            ObjectType.BLOB.writeObject(this.hashID, new Blob(this.hashID, chunks));
+        } else {
+            ObjectType.BLOB.writeObject(this.hashID, this);
+        }
+        Trace.end("save-blob", start);
     }
 
     /**Persistence: Given the blob ID, this method returns the blob object
      * read from the files. It enters the subdirectory first, as the blobs
-     * distribute as in a hash table. */
+     * distribute as in a hash table. Packed blobs are read from their pack. */
     static Blob load(String blobID) {
-        String firstTwoID = blobID.substring(0, 2);
-        File subDir = Utils.join(BLOB_DIR, firstTwoID);
-        if (subDir.exists() && subDir.isDirectory()) {
-            File blobFile = Utils.join(subDir, blobID);
-            Blob blob = Utils.readObject(blobFile, Blob.class);
-            return blob;
-        } else {
-            throw Utils.error("Can't find the subdirectory of the blob: " + blobID);
+        long start = Trace.start();
+        Blob blob = ObjectType.BLOB.readObject(blobID, Blob.class);
+        if (blob == null) {
+            throw Utils.error("Can't find the blob: " + blobID);
         }
+        if (blob.isChunked()) {
+            blob.content = Chunker.load(blob.chunkIDs);
+        }
+        Trace.end("load-blob", start);
+        return blob;
     }
 
+    /**Persistence: returns the content of the blob BLOBID, kept off the heap
+     * where the store allows it. A large file is mapped from the store, and
+     * a chunked blob from its chunks (see Chunker.map), so the heap holds at
+     * most one chunk of them. A plain blob is a serialized object and is
+     * read whole; with blob.chunking set, it is under blob.chunkThreshold. */
+    static ByteBuffer mapContent(String blobID) {
+        Blob blob = ObjectType.BLOB.readObject(blobID, Blob.class);
+        if (blob == null) {
+            throw Utils.error("Can't find the blob: " + blobID);
+        }
+        if (blob.isLargeFile()) {
+            return LineDiff.map(LargeFiles.objectFile(blobID));
+        }
+        return blob.isChunked() ? Chunker.map(blob.chunkIDs) : ByteBuffer.wrap(blob.content);
+    }
+
+    /* A large file is copied from the store without reading it. */
     static void copyContentToFile(String fileName, String blobID) {
         Blob blob = Blob.load(blobID);
-        File targetFile = Utils.join(Repository.CWD, fileName);
-        Utils.writeContents(targetFile, blob.getContent());
+        File targetFile = Utils.join(Repository.cwd(), fileName);
+        if (blob.isLargeFile()) {
+            LargeFiles.copyTo(blobID, targetFile);
+        } else {
+            Utils.writeContents(targetFile, blob.getContent());
+        }
     }
 }
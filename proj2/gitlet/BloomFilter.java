@@ -0,0 +1,74 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** A small Bloom filter over file names, one per commit in the commit graph.
+ *  It answers "might this commit have changed the file?" without loading
+ *  the commit. A false answer is always right; a true answer must be
+ *  confirmed by comparing the blob IDs of the commit and its parent.
+ *  Positions are derived by double hashing from two hash functions whose
+ *  values are fixed by their definition, so a filter written by one JVM
+ *  can be read by another.
+ *
+ *  @author Li Yanzhuo
+ */
+class BloomFilter implements Serializable {
+    /** Bits per inserted path, about 1% false positives with NUM_HASHES. */
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int NUM_HASHES = 7;
+    private final long[] bits;
+
+    BloomFilter(Collection<String> paths) {
+        int numBits = Math.max(64, paths.size() * BITS_PER_ENTRY);
+        this.bits = new long[(numBits + 63) / 64];
+        for (String path : paths) {
+            add(path);
+        }
+    }
+
+    void add(String path) {
+        long numBits = (long) bits.length * 64;
+        int h1 = hash1(path);
+        int h2 = hash2(path);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << (bit & 63);
+        }
+    }
+
+    boolean mightContain(String path) {
+        long numBits = (long) bits.length * 64;
+        int h1 = hash1(path);
+        int h2 = hash2(path);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** String.hashCode is specified by the language, spread with a murmur3 finalizer. */
+    private static int hash1(String path) {
+        int h = path.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /** FNV-1a over the UTF-8 bytes; forced odd so the probe sequence never stalls. */
+    private static int hash2(String path) {
+        int h = 0x811c9dc5;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x01000193;
+        }
+        return h | 1;
+    }
+}
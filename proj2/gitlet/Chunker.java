@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Content-defined chunking of large blobs (FastCDC).
+ *  A rolling "gear" hash is computed over the content, and a chunk ends
+ *  wherever the low bits selected by a mask are all zero. Because the cut
+ *  points depend only on the bytes just before them, inserting or appending
+ *  a few bytes only changes the chunks around the edit: every other chunk
+ *  gets the same boundaries and the same hash as in the previous version.
+ *  Chunks are stored once, content-addressed by the SHA-1 of their bytes, in
+ *  the chunks directory, so a new version of a large file only writes its new chunks.
+ *
+ *  Like FastCDC, the chunker uses normalized chunking: no cut is searched
+ *  before MIN_SIZE, a harder mask (more bits) is used up to AVG_SIZE and an
+ *  easier one after it, which keeps most chunks close to the average size,
+ *  and a chunk is always cut at MAX_SIZE.
+ *
+ *  @author Li Yanzhuo
+ */
+class Chunker {
+    static final int MIN_SIZE = 2 * 1024;
+    static final int AVG_SIZE = 8 * 1024;
+    static final int MAX_SIZE = 64 * 1024;
+
+    /** 15 and 11 effective bits, spread over the hash as in the FastCDC paper. */
+    private static final long MASK_S = 0x0003590703530000L;
+    private static final long MASK_L = 0x0000d90003530000L;
+
+    /** One random 64-bit value per byte value. The table must be the same on
+     *  every run, otherwise the same content would be cut differently, so it
+     *  is generated from a fixed seed with SplitMix64. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long seed = 0x5EED61B2L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private Chunker() {
+    }
+
+    /** Return the length of the chunk starting at OFFSET. */
+    private static int nextCut(byte[] content, int offset) {
+        int remaining = content.length - offset;
+        if (remaining <= MIN_SIZE) {
+            return remaining;
+        }
+        int end = Math.min(remaining, MAX_SIZE);
+        int normal = Math.min(end, AVG_SIZE);
+        long fingerprint = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[content[offset + i] & 0xFF];
+            if ((fingerprint & MASK_S) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[content[offset + i] & 0xFF];
+            if ((fingerprint & MASK_L) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /** Return the end offset of every chunk of CONTENT, in order. */
+    static List<Integer> cutPoints(byte[] content) {
+        List<Integer> cuts = new ArrayList<>();
+        int offset = 0;
+        while (offset < content.length) {
+            offset += nextCut(content, offset);
+            cuts.add(offset);
+        }
+        return cuts;
+    }
+
+    /** Persistence: split CONTENT into chunks, write the chunks that are not
+     *  stored yet, and return the IDs of all the chunks in order. */
+    static String[] save(byte[] content) {
+        long start = Trace.start();
+        List<Integer> cuts = cutPoints(content);
+        String[] chunkIDs = new String[cuts.size()];
+        int offset = 0;
+        for (int i = 0; i < chunkIDs.length; i++) {
+            byte[] chunk = Arrays.copyOfRange(content, offset, cuts.get(i));
+            chunkIDs[i] = Utils.sha1(chunk);
+            if (!ObjectType.CHUNK.contains(chunkIDs[i])) {
+                ObjectType.CHUNK.write(chunkIDs[i], chunk);
+            }
+            offset = cuts.get(i);
+        }
+        Trace.end("save-chunks", start);
+        return chunkIDs;
+    }
+
+    /** Persistence: read the chunks and return their concatenation. */
+    static byte[] load(String[] chunkIDs) {
+        long start = Trace.start();
+        byte[][] chunks = new byte[chunkIDs.length][];
+        int length = 0;
+        for (int i = 0; i < chunkIDs.length; i++) {
+            chunks[i] = ObjectType.CHUNK.read(chunkIDs[i]);
+            if (chunks[i] == null) {
+                throw Utils.error("Can't find the chunk: " + chunkIDs[i]);
+            }
+            length += chunks[i].length;
+        }
+        byte[] content = new byte[length];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, content, offset, chunk.length);
+            offset += chunk.length;
+        }
+        Trace.end("load-chunks", start);
+        return content;
+    }
+
+    /** Persistence: write the chunks one at a time to a temporary file and
+     *  return the file mapped, so that reading the content holds one chunk
+     *  (at most MAX_SIZE bytes) on the heap however large it is, instead of
+     *  every chunk and their concatenation as load does. The file is
+     *  deleted once mapped; the mapping stays valid until it is collected. */
+    static ByteBuffer map(String[] chunkIDs) {
+        long start = Trace.start();
+        File tmpFile = null;
+        try {
+            tmpFile = Files.createTempFile(Repository.commonPath().toPath(),
+                    "chunks", ".tmp").toFile();
+            ByteBuffer content;
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                for (String chunkID : chunkIDs) {
+                    byte[] chunk = ObjectType.CHUNK.read(chunkID);
+                    if (chunk == null) {
+                        throw Utils.error("Can't find the chunk: " + chunkID);
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw Utils.error("Blob too large to map: " + channel.size() + " bytes");
+                }
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Trace.end("map-chunks", start);
+            return content;
+        } catch (IOException excp) {
+            throw Utils.error("Can't read the chunks: " + excp.getMessage());
+        } finally {
+            if (tmpFile != null && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+}
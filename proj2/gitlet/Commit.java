@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -33,14 +32,15 @@ public class Commit implements Serializable {
      * variable is used. We've provided one example for `message`.
      */
 
-    static final File COMMIT_DIR = Utils.join(Repository.GITLET_DIR, "commits"); // the file path
     static final int ID_LENGTH = 40;
     private String message;
     private String hashID;
     private String firstParentID;
     private String secondParentID;
     private long timestamp;
-    private Map<String, String> files = new HashMap<>(); // store the filename and blobs
+    private String treeID; // the ID of the file tree, stored apart from the commit
+    /* the filename and blobs, loaded lazily, see getFileTree */
+    private transient FileTree files;
 
 
     /**Methods that a commit class should have:
@@ -53,8 +53,10 @@ public class Commit implements Serializable {
     Commit(String message) {
         this.message = message;
         // init commit
-        if (message.equals("initial commit") && Utils.isEmptyDirectory(COMMIT_DIR)) {
+        if (message.equals("initial commit") && ObjectType.COMMIT.allIDs().isEmpty()) {
             this.timestamp = 0L;
+            this.files = new FileTree();
+            this.treeID = this.files.getHash();
             this.hashID = this.generateHashID();
         } else {
             System.out.println("This constructor is solely for initial commit. "
@@ -70,28 +72,39 @@ public class Commit implements Serializable {
 
     /* Constructor for merge commit*/
     Commit(String message, Commit curCommit, Commit mergeCommit) {
+        this(message, curCommit, mergeCommit, Repository.loadStagingArea());
+    }
+
+    /* Constructor for a commit whose changes to the parent are given,
+     * in the staging area format: fileName - blobID or "REMOVE".
+     * Used directly by the commands that build commits in memory. */
+    Commit(String message, Commit curCommit, Commit mergeCommit,
+           Map<String, String> stagingFiles) {
+        this(message, curCommit, mergeCommit, changedTree(curCommit, stagingFiles));
+    }
+
+    /* Constructor for a commit whose file tree is already built, which may be
+     * the same as the parent's, e.g. the index snapshot of a stash. */
+    Commit(String message, Commit curCommit, Commit mergeCommit, FileTree files) {
         this.message = message;
         this.timestamp = Instant.now().getEpochSecond();
         this.firstParentID = curCommit.hashID;
         if (mergeCommit != null) {
             this.secondParentID = mergeCommit.hashID;
         }
+        this.files = files;
+        this.treeID = this.files.getHash();
+
+        this.hashID = generateHashID();
+    }
 
-        this.files = new HashMap<>(curCommit.files); // shallow copy, for kv are String
-        HashMap<String, String> stagingFiles = Repository.loadStagingArea();
+    private static FileTree changedTree(Commit curCommit, Map<String, String> stagingFiles) {
         if (stagingFiles.isEmpty()) {
             System.out.println("No changes added to the commit.");
             System.exit(0);
         }
-        for (Map.Entry<String, String> entry: stagingFiles.entrySet()) {
-            if (entry.getValue().equals("REMOVE")) {
-                this.files.remove(entry.getKey());
-            } else {
-                this.files.put(entry.getKey(), entry.getValue());
-            }
-        }
-
-        this.hashID = generateHashID();
+        // only the tree nodes on the paths of the staged files are rebuilt and re-hashed
+        return curCommit.getFileTree().withChanges(stagingFiles);
     }
 
     /* Return the hashID of the commit.*/
@@ -100,8 +113,25 @@ public class Commit implements Serializable {
     }
 
     HashMap<String, String> getFiles() {
-        HashMap<String, String> copiedFiles = new HashMap<>(this.files);
-        return copiedFiles;
+        return getFileTree().toMap();
+    }
+
+    /* Return the file tree of the commit, reading its manifest on first use.
+     * Commands that only need the message, the date or the parents never pay for it. */
+    FileTree getFileTree() {
+        if (this.files == null) {
+            this.files = FileTree.load(this.treeID);
+        }
+        return this.files;
+    }
+
+    String getTreeID() {
+        return this.treeID;
+    }
+
+    /* Return the blob ID of the file in this commit, or null if it is not tracked. */
+    String getBlobID(String fileName) {
+        return getFileTree().get(fileName);
     }
 
     String getFirstParentID() {
@@ -112,6 +142,10 @@ public class Commit implements Serializable {
         return this.secondParentID;
     }
 
+    long getTimestamp() {
+        return this.timestamp;
+    }
+
     String getMessage() {
         return this.message;
     }
@@ -140,69 +174,91 @@ public class Commit implements Serializable {
     }
 
     /**Persistence: a method that writes the commit object into file,
-     * in the subdirectory by its first 2 id numbers - Hash Table. */
+     * in the subdirectory by its first 2 id numbers - Hash Table.
+     * The commit file is only a small header; the file tree is saved
+     * to its own objects first, and the commit is appended to the
+     * commit graph last. */
     void save() {
+        long start = Trace.start();
         if (this.hashID == null || hashID.length() < 2) {
             System.out.println("HashID of the commit is shorter than 2.");
             System.exit(0);
         }
-        String firstTwoID = this.hashID.substring(0, 2);
-        File subDir = Utils.join(COMMIT_DIR, firstTwoID);
-        subDir.mkdir();
-        File commitFile = Utils.join(subDir, this.hashID);
-        if (commitFile.exists()) {
+        if (isSaved()) {
             System.out.println("Same commit file already exists.");
             System.exit(0);
         }
-        Utils.writeObject(commitFile, this);
+        if (this.files != null) {
+            this.files.save();
+        }
+        ObjectType.COMMIT.writeObject(this.hashID, this);
+        CommitGraph.append(this);
+        Trace.end("save-commit", start);
+    }
+
+    /* Whether a commit with the same ID is already in the store. */
+    boolean isSaved() {
+        return ObjectType.COMMIT.contains(this.hashID);
     }
 
     /**Persistence: Given the commit ID, this method returns the commit object
      * read from the files. It enters the subdirectory first, as the commits
-     * distribute as in a hash table.
+     * distribute as in a hash table, then looks in the packs.
      * prefix match: allow prefix >= 4*/
     static Commit load(String commitID) {
-        String firstTwoID = commitID.substring(0, 2);
-        File subDir = Utils.join(COMMIT_DIR, firstTwoID);
-        if (subDir.exists() && subDir.isDirectory()) {
-            if (commitID.length() == ID_LENGTH) {
-                File commitFile = Utils.join(subDir, commitID);
-                Commit commit = Utils.readObject(commitFile, Commit.class);
-                return commit;
-            } else if (commitID.length() < 4) {
-                System.out.println("Incorrect operation.");
+        long start = Trace.start();
+        try {
+            return loadFromFile(commitID);
+        } finally {
+            Trace.end("load-commit", start);
+        }
+    }
+
+    private static Commit loadFromFile(String commitID) {
+        if (commitID.length() == ID_LENGTH) {
+            Commit commit = ObjectType.COMMIT.readObject(commitID, Commit.class);
+            if (commit == null) {
+                System.out.println("No commit with that id exists.");
                 System.exit(0);
-                return null;
-            } else { // prefix match
-                int matches = 0; // starts with 0 match
-                String loadID = null;
-                List<String> commitIDs = Utils.plainFilenamesIn(subDir);
-                for (String fullID : commitIDs) {
-                    if (commitID.equals(fullID.substring(0, commitID.length()))) {
-                        matches++;
-                        loadID = fullID;
-                    }
-                }
-                if (matches == 1) {
-                    File commitFile = Utils.join(subDir, loadID);
-                    Commit commit = Utils.readObject(commitFile, Commit.class);
-                    return commit;
-                } else {
-                    System.out.println("No commit with that id exists.");
-                    System.exit(0);
-                    return null;
-                }
             }
-        } else {
+            return commit;
+        }
+        List<String> commitIDs = ObjectType.COMMIT.idsWithPrefix(commitID.substring(0, 2));
+        if (commitIDs.isEmpty()) {
             System.out.println("No commit with that id exists.");
             System.exit(0);
             return null;
+        } else if (commitID.length() < 4) {
+            System.out.println("Incorrect operation.");
+            System.exit(0);
+            return null;
+        } else { // prefix match
+            String loadID = null;
+            int matches = 0; // starts with 0 match
+            for (String fullID : commitIDs) {
+                if (fullID.startsWith(commitID)) {
+                    matches++;
+                    loadID = fullID;
+                }
+            }
+            if (matches == 1) {
+                return ObjectType.COMMIT.readObject(loadID, Commit.class);
+            } else {
+                System.out.println("No commit with that id exists.");
+                System.exit(0);
+                return null;
+            }
         }
     }
 
+    /* This method checks that the stored hashID matches the content of the commit. */
+    boolean hasValidHashID() {
+        return this.hashID != null && this.hashID.equals(generateHashID());
+    }
+
     /* This method checks whether the fileName-blob is already tracked by the commit. */
     boolean containsBlob(String fileName, String blobID) {
-        String trackedBlob = this.files.get(fileName);
+        String trackedBlob = getBlobID(fileName);
         return trackedBlob != null && (blobID.equals(trackedBlob));
     }
 
@@ -215,70 +271,32 @@ public class Commit implements Serializable {
 
     /**A method for merge. It returns the split point aka. the latest
      * common ancestor of the two given commits
-     * in a Directed Acyclic Graph.*/
-
+     * in a Directed Acyclic Graph.
+     * The search runs on the commit graph ordered by generation numbers,
+     * see MergeBase, so only the split point itself and the commits that are
+     * not in the graph yet are loaded. If there are several best common
+     * ancestors (criss-cross merges), the most recent one is returned. */
     static Commit getSplitPoint(Commit a, Commit b) {
-        String aCommitID = a.getCommitID();
-        String bCommitID = b.getCommitID();
-
-        Queue<String> queue1 = new LinkedList<>();
-        queue1.add(aCommitID);
-        Queue<String> queue2 = new LinkedList<>();
-        queue2.add(bCommitID);
-        HashSet<String> visited = new HashSet<>();
-
-        while (!queue1.isEmpty() || !queue2.isEmpty()) {
-            // queue1
-            String curr1 = queue1.poll();
-            if (curr1 != null) {
-                Commit currentCommit1 = load(curr1);
-                if (visited.contains(curr1)) {
-                    return currentCommit1;
-                }
-                visited.add(curr1);
-                if (currentCommit1.firstParentID != null) {
-                    queue1.add(currentCommit1.firstParentID);
-                }
-                if (currentCommit1.secondParentID != null) {
-                    queue1.add(currentCommit1.secondParentID);
-                }
-            }
-            // queue2
-            String curr2 = queue2.poll();
-            if (curr2 != null) {
-                Commit currentCommit2 = load(curr2);
-                if (visited.contains(curr2)) {
-                    return currentCommit2;
-                }
-                visited.add(curr2);
-                if (currentCommit2.firstParentID != null) {
-                    queue2.add(currentCommit2.firstParentID);
-                }
-                if (currentCommit2.secondParentID != null) {
-                    queue2.add(currentCommit2.secondParentID);
-                }
-            }
+        long start = Trace.start();
+        CommitGraph graph = CommitGraph.load();
+        graph.ensure(a.getCommitID());
+        graph.ensure(b.getCommitID());
+        graph.save();
+        List<String> bases = new MergeBase(graph).find(a.getCommitID(), b.getCommitID());
+        Trace.end("split-point", start);
+        if (bases.isEmpty()) {
+            return null;
         }
-        return null;
+        return load(bases.get(0));
     }
 
     /**A helper method that generate the hashID of a commit.
-     * files, timestamp, message distinguish commits from each other. */
+     * files, timestamp, message distinguish commits from each other.
+     * The files are hashed through the canonical hash of the file tree,
+     * so the ID does not depend on any map iteration order. */
     private String generateHashID() {
         String timestampStr = String.valueOf(timestamp);
-        String filesStr = getBlobsinString();
-        String hashId = Utils.sha1(this.message, timestampStr, filesStr);
+        String hashId = Utils.sha1(this.message, timestampStr, this.treeID);
         return hashId;
     }
-
-    /**A helper method for hashID generating.*/
-    private String getBlobsinString() {
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, String> entry : this.files.entrySet()) {
-            String filename = entry.getKey();
-            String blobID = entry.getValue();
-            sb.append(filename).append(":").append(blobID).append(";");
-        }
-        return sb.toString();
-    }
 }
@@ -0,0 +1,352 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/** The commit graph is an auxiliary index stored in .gitlet/commit-graphs.
+ *  For every commit it keeps the parent IDs, the generation number, the
+ *  timestamp and a Bloom filter of the file names changed relative to the
+ *  first parent, so that history queries can walk the graph and skip most
+ *  commits without calling Commit.load on them.
+ *  The generation number of a root commit is 1, and that of any other commit
+ *  is one more than the largest generation of its parents, so a commit can
+ *  only be an ancestor of commits with a larger generation.
+ *  The graph is kept current as commits are made: Commit.save appends each
+ *  new commit, so read commands find the graph complete and never rebuild it.
+ *  As in Git, the graph is a chain of layer files listed, oldest first, in
+ *  commit-graph-chain. An append writes the new entries as a new layer, and
+ *  a layer is merged into the one below it while it holds at least half as
+ *  many entries, but never into the base layer: the base is only rewritten
+ *  by gitlet maintenance, which merges the whole chain into it (compact).
+ *  So an append reads and rewrites only layers above the base, which hold
+ *  the k commits made since the last maintenance; there are about log(k) of
+ *  them, and each entry is rewritten about log(k) times, though a single
+ *  append can rewrite all k. The union of the layers always holds the
+ *  parents of every commit in it.
+ *  The graph is only a cache of information held by the commits themselves:
+ *  missing commits (made before the graph, or copied by fetch) are added on
+ *  demand, and an unreadable graph is rebuilt.
+ *
+ *  @author Li Yanzhuo
+ */
+class CommitGraph {
+    /** Commits that change more files than this get no filter and are always checked. */
+    static final int MAX_CHANGED_PATHS = 512;
+    /** A new layer is merged into the one below while it is at least 1 / SIZE_MULTIPLE its size. */
+    private static final int SIZE_MULTIPLE = 2;
+
+    /** A node of the graph: the parents and changed paths of one commit. */
+    static class Entry implements Serializable {
+        final String firstParentID;
+        final String secondParentID;
+        final int generation;
+        final long timestamp;
+        /** Null when the commit changed too many files to be worth filtering. */
+        final BloomFilter changedPaths;
+
+        Entry(String firstParentID, String secondParentID, int generation,
+              long timestamp, BloomFilter changedPaths) {
+            this.firstParentID = firstParentID;
+            this.secondParentID = secondParentID;
+            this.generation = generation;
+            this.timestamp = timestamp;
+            this.changedPaths = changedPaths;
+        }
+
+        List<String> parents() {
+            List<String> parents = new ArrayList<>(2);
+            if (firstParentID != null) {
+                parents.add(firstParentID);
+            }
+            if (secondParentID != null) {
+                parents.add(secondParentID);
+            }
+            return parents;
+        }
+
+        /** Return false only if the commit certainly did not change the file. */
+        boolean mightHaveChanged(String fileName) {
+            return changedPaths == null || changedPaths.mightContain(fileName);
+        }
+    }
+
+    /** The layer names of the chain file and their entry counts, oldest first. */
+    private final List<String> layerNames = new ArrayList<>();
+    private final List<Integer> layerSizes = new ArrayList<>();
+    /** The number of layers read into entries, from the newest one down. */
+    private int layersRead;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    /** The entries added since the graph was read, the next layer written by save. */
+    private final HashMap<String, Entry> added = new HashMap<>();
+    /** Set when a layer could not be read: save then replaces the whole chain. */
+    private boolean stale;
+
+    private CommitGraph() {
+    }
+
+    Entry get(String commitID) {
+        return entries.get(commitID);
+    }
+
+    private void put(String commitID, Entry entry) {
+        entries.put(commitID, entry);
+        added.put(commitID, entry);
+    }
+
+    /** Add the given commit and all of its missing ancestors to the graph.
+     *  Each missing commit is loaded once, and the first parent loaded for
+     *  the diff is reused when the walk continues down the same chain.
+     *  The walk is post-order: an entry is only created once its parents have
+     *  theirs, so that its generation number can be computed. */
+    void ensure(String commitID) {
+        Deque<String> stack = new ArrayDeque<>();
+        HashMap<String, Entry> pending = new HashMap<>();
+        stack.push(commitID);
+        Commit previous = null;
+        while (!stack.isEmpty()) {
+            String id = stack.peek();
+            if (entries.containsKey(id)) {
+                stack.pop();
+                continue;
+            }
+            Entry partial = pending.get(id);
+            if (partial != null) {
+                // second visit: every parent has an entry now
+                stack.pop();
+                int generation = 0;
+                for (String parentID : partial.parents()) {
+                    generation = Math.max(generation, entries.get(parentID).generation);
+                }
+                put(id, new Entry(partial.firstParentID, partial.secondParentID,
+                        generation + 1, partial.timestamp, partial.changedPaths));
+                pending.remove(id);
+                continue;
+            }
+
+            Commit commit = (previous != null && previous.getCommitID().equals(id))
+                    ? previous : Commit.load(id);
+            Commit firstParent = null;
+            if (commit.getFirstParentID() != null) {
+                firstParent = Commit.load(commit.getFirstParentID());
+            }
+            pending.put(id, new Entry(commit.getFirstParentID(), commit.getSecondParentID(),
+                    0, commit.getTimestamp(), changedPaths(commit, firstParent)));
+
+            if (commit.getSecondParentID() != null) {
+                stack.push(commit.getSecondParentID());
+            }
+            if (firstParent != null) {
+                stack.push(firstParent.getCommitID());
+            }
+            previous = firstParent;
+        }
+    }
+
+    /** Return a Bloom filter of the files whose blob differs between the
+     *  commit and its first parent, or null if there are too many of them. */
+    private static BloomFilter changedPaths(Commit commit, Commit parent) {
+        FileTree parentTree = parent == null ? new FileTree() : parent.getFileTree();
+        List<String> changed = commit.getFileTree().changedFiles(parentTree);
+        if (changed.size() > MAX_CHANGED_PATHS) {
+            return null;
+        }
+        return new BloomFilter(changed);
+    }
+
+    static File graphDir() {
+        return Repository.commonPath("commit-graphs");
+    }
+
+    static File chainFile() {
+        return Utils.join(graphDir(), "commit-graph-chain");
+    }
+
+    private static File layerFile(String name) {
+        return Utils.join(graphDir(), name);
+    }
+
+    /** Persistence: read the whole graph, or start an empty one if a layer
+     *  is missing or was written in a format this version cannot read. */
+    static CommitGraph load() {
+        CommitGraph graph = new CommitGraph();
+        try {
+            graph.readChain();
+            while (graph.readNextLayer()) {
+                continue;
+            }
+        } catch (IllegalArgumentException e) {
+            // a stale cache, rebuilt from the commits by ensure
+            graph.entries.clear();
+            graph.stale = true;
+        }
+        return graph;
+    }
+
+    /** Add COMMIT, which was just saved, to the graph. Only the newest
+     *  layers are read, down to the ones holding its parents; when a parent
+     *  is not in the graph at all, its missing ancestors are added too. */
+    static void append(Commit commit) {
+        CommitGraph graph = new CommitGraph();
+        List<String> parents = new ArrayList<>(2);
+        if (commit.getFirstParentID() != null) {
+            parents.add(commit.getFirstParentID());
+        }
+        if (commit.getSecondParentID() != null) {
+            parents.add(commit.getSecondParentID());
+        }
+        try {
+            graph.readChain();
+            for (String parentID : parents) {
+                while (graph.get(parentID) == null && graph.readNextLayer()) {
+                    continue;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            graph = load();
+        }
+        int generation = 0;
+        for (String parentID : parents) {
+            Entry parent = graph.get(parentID);
+            if (parent == null) {
+                generation = -1;
+                break;
+            }
+            generation = Math.max(generation, parent.generation);
+        }
+        if (generation < 0) {
+            if (graph.layersRead < graph.layerNames.size()) {
+                graph = load();
+            }
+            graph.ensure(commit.getCommitID());
+        } else {
+            Commit firstParent = parents.isEmpty() ? null : Commit.load(parents.get(0));
+            graph.put(commit.getCommitID(), new Entry(commit.getFirstParentID(),
+                    commit.getSecondParentID(), generation + 1, commit.getTimestamp(),
+                    changedPaths(commit, firstParent)));
+        }
+        graph.save();
+    }
+
+    /** Read the layer list of the chain file, or none without one. */
+    private void readChain() {
+        if (!chainFile().isFile()) {
+            return;
+        }
+        for (String line : Utils.readContentsAsString(chainFile()).split("\n")) {
+            String[] fields = line.split(" ");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("bad commit-graph-chain line");
+            }
+            layerNames.add(fields[0]);
+            layerSizes.add(Integer.parseInt(fields[1]));
+        }
+    }
+
+    /** Read the newest layer not read yet into entries. Returns false if
+     *  every layer is read. Entries already read, from newer layers, win. */
+    private boolean readNextLayer() {
+        if (layersRead == layerNames.size()) {
+            return false;
+        }
+        layersRead++;
+        HashMap<String, Entry> layer = readLayer(layerNames.get(layerNames.size() - layersRead));
+        for (Map.Entry<String, Entry> entry : layer.entrySet()) {
+            entries.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, Entry> readLayer(String name) {
+        File file = layerFile(name);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("missing commit-graph layer " + name);
+        }
+        return Utils.readObject(file, HashMap.class);
+    }
+
+    /** Merge every layer into one base layer. Called by gitlet maintenance,
+     *  since appends never rewrite the base layer. */
+    static void compact() {
+        CommitGraph graph = load();
+        if (graph.layerNames.size() <= 1 && !graph.stale) {
+            return;
+        }
+        graph.added.putAll(graph.entries);
+        graph.stale = true;
+        graph.save();
+    }
+
+    /** Persistence: write the entries added since the graph was read as a
+     *  new layer, merging it into the layers below, except the base layer,
+     *  while it is at least half their size, then replace the chain file
+     *  and delete the layers it no longer lists. */
+    void save() {
+        if (added.isEmpty() && !stale) {
+            return;
+        }
+        List<File> obsolete = new ArrayList<>();
+        if (stale) {
+            for (String name : layerNames) {
+                obsolete.add(layerFile(name));
+            }
+            layerNames.clear();
+            layerSizes.clear();
+        }
+        HashMap<String, Entry> top = new HashMap<>(added);
+        while (layerNames.size() > 1
+                && top.size() * SIZE_MULTIPLE >= layerSizes.get(layerSizes.size() - 1)) {
+            int last = layerNames.size() - 1;
+            HashMap<String, Entry> below;
+            try {
+                below = readLayer(layerNames.get(last));
+            } catch (IllegalArgumentException e) {
+                // the new entries may need parents from the unreadable layer:
+                // drop the whole graph, it is rebuilt on demand
+                for (String layerName : layerNames) {
+                    layerFile(layerName).delete();
+                }
+                obsolete.forEach(File::delete);
+                chainFile().delete();
+                return;
+            }
+            below.putAll(top);
+            top = below;
+            obsolete.add(layerFile(layerNames.remove(last)));
+            layerSizes.remove(last);
+        }
+        byte[] bytes = Utils.serialize(top);
+        String name = "graph-" + Utils.sha1(bytes);
+        graphDir().mkdirs();
+        Utils.writeContents(layerFile(name), bytes);
+        layerNames.add(name);
+        layerSizes.add(top.size());
+        writeChain();
+        obsolete.remove(layerFile(name));
+        for (File file : obsolete) {
+            file.delete();
+        }
+        added.clear();
+        stale = false;
+    }
+
+    /** Replace the chain file at once, so readers see the old or the new chain. */
+    private void writeChain() {
+        StringBuilder chain = new StringBuilder();
+        for (int i = 0; i < layerNames.size(); i++) {
+            chain.append(layerNames.get(i)).append(' ').append(layerSizes.get(i)).append('\n');
+        }
+        File tmpFile = Utils.join(graphDir(), "commit-graph-chain.tmp");
+        Utils.writeContents(tmpFile, chain.toString());
+        try {
+            Files.move(tmpFile.toPath(), chainFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Can't write the commit graph: " + excp.getMessage());
+        }
+    }
+}
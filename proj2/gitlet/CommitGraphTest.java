@@ -0,0 +1,84 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Tests of the layer chain of CommitGraph over many commits, on a
+ *  temporary repository. */
+public class CommitGraphTest {
+    private File dir;
+
+    @Before
+    public void initRepository() throws IOException {
+        dir = Files.createTempDirectory("gitlet-graph").toFile();
+        Repository.useWorktree(new Worktree(dir));
+        Repository.init();
+    }
+
+    @After
+    public void deleteRepository() throws IOException {
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    /** Commit a new version of f.txt. */
+    private void commit(int i) {
+        Utils.writeContents(Utils.join(dir, "f.txt"), "version " + i);
+        Repository.add("f.txt");
+        Repository.commit("commit " + i);
+    }
+
+    /** The entry counts of the layers in the chain file, oldest first. */
+    private static List<Integer> layerSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (String line : Utils.readContentsAsString(CommitGraph.chainFile()).split("\n")) {
+            sizes.add(Integer.parseInt(line.split(" ")[1]));
+        }
+        return sizes;
+    }
+
+    @Test
+    public void appendsNeverRewriteTheBaseLayer() {
+        assertEquals(List.of(1), layerSizes());
+        for (int i = 1; i <= 100; i++) {
+            commit(i);
+            List<Integer> sizes = layerSizes();
+            // the base still holds only the initial commit
+            assertEquals(1, (int) sizes.get(0));
+            assertEquals(i + 1, sizes.stream().mapToInt(Integer::intValue).sum());
+            // above the base, every layer is over twice the size of the next one
+            for (int j = 2; j < sizes.size(); j++) {
+                assertTrue(sizes.toString(), sizes.get(j) * 2 < sizes.get(j - 1));
+            }
+            assertTrue(sizes.toString(), sizes.size() <= 2 + 31 - Integer.numberOfLeadingZeros(i));
+        }
+    }
+
+    @Test
+    public void maintenanceMergesTheChain() {
+        for (int i = 1; i <= 10; i++) {
+            commit(i);
+        }
+        assertTrue(layerSizes().size() > 1);
+        Maintenance.run();
+        assertEquals(List.of(11), layerSizes());
+        String head = Refs.read(Refs.HEADS + "master");
+        assertEquals(11, CommitGraph.load().get(head).generation);
+
+        commit(11);
+        assertEquals(List.of(11, 1), layerSizes());
+        // the merged layers are deleted
+        assertEquals(2, CommitGraph.graphDir().list((d, name) -> name.startsWith("graph-")).length);
+    }
+}
@@ -0,0 +1,96 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/** The settings of a repository, stored as "key=value" lines in .gitlet/config.
+ *  Every key has a default, so a repository without a config file (or with
+ *  keys missing from it) behaves exactly like before the key existed.
+ *  Only the keys listed in DEFAULTS can be set, so a typo is an error
+ *  instead of a setting that is silently ignored.
+ *
+ *  @author Li Yanzhuo
+ */
+class Config {
+    /** Store blobs of at least blob.chunkThreshold bytes as content-defined chunks. */
+    static final String CHUNKING = "blob.chunking";
+    static final String CHUNK_THRESHOLD = "blob.chunkThreshold";
+    /** Keep files of at least blob.largeFileThreshold bytes in the large file store. */
+    static final String LARGE_FILES = "blob.largeFiles";
+    static final String LARGE_FILE_THRESHOLD = "blob.largeFileThreshold";
+    /** Seconds after which gc and reflog expire drop a reflog entry, 90 days by default. */
+    static final String REFLOG_EXPIRE = "gc.reflogExpire";
+
+    private static final Map<String, String> DEFAULTS = new TreeMap<>(Map.of(
+            CHUNKING, "false",
+            CHUNK_THRESHOLD, "65536",
+            LARGE_FILES, "false",
+            LARGE_FILE_THRESHOLD, "1048576",
+            REFLOG_EXPIRE, "7776000"));
+
+    private Config() {
+    }
+
+    static File configFile() {
+        return Repository.commonPath("config");
+    }
+
+    static boolean isKnown(String key) {
+        return DEFAULTS.containsKey(key);
+    }
+
+    /** Return the value of KEY, or its default if it was never set. */
+    static String get(String key) {
+        return load().getProperty(key, DEFAULTS.get(key));
+    }
+
+    static boolean getBoolean(String key) {
+        return Boolean.parseBoolean(get(key));
+    }
+
+    /** Return the value of KEY as a number; an invalid value counts as the default. */
+    static long getLong(String key) {
+        try {
+            return Long.parseLong(get(key).trim());
+        } catch (NumberFormatException e) {
+            return Long.parseLong(DEFAULTS.get(key));
+        }
+    }
+
+    /** Set KEY to VALUE and rewrite the config file. */
+    static void set(String key, String value) {
+        Properties props = load();
+        props.setProperty(key, value);
+        try (Writer writer = new FileWriter(configFile())) {
+            props.store(writer, null);
+        } catch (IOException excp) {
+            throw Utils.error("Can't write the config file: " + excp.getMessage());
+        }
+    }
+
+    /** Return the settings of the repository, read from the file on first
+     *  use. They are only published once read, so that a thread never sees
+     *  a half-read file. */
+    private static synchronized Properties load() {
+        Store store = Repository.store();
+        if (store.config == null) {
+            Properties props = new Properties();
+            if (configFile().isFile()) {
+                try (Reader reader = new FileReader(configFile())) {
+                    props.load(reader);
+                } catch (IOException excp) {
+                    throw Utils.error("Can't read the config file: " + excp.getMessage());
+                }
+            }
+            store.config = props;
+        }
+        return store.config;
+    }
+}
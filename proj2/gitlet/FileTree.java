@@ -0,0 +1,373 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.*;
+
+/** The file map of a commit: file names mapped to blob IDs.
+ *  Instead of one big map, the files form a hash trie: each name has a
+ *  32-bit hash, and a node at depth d holds the files whose hashes agree on
+ *  their first d digits of 4 bits. A node of at most LEAF_MAX files is a
+ *  leaf, a sorted map of its files; a larger one is an inner node with
+ *  FANOUT children, one per value of the next digit, and keeps the hash and
+ *  size of each. A leaf that grows past LEAF_MAX is split into children,
+ *  and an inner node that shrinks to LEAF_MAX files is collapsed into a
+ *  leaf, so the shape only depends on the files: the hash of the tree is
+ *  the same on every JVM, whatever order the files were added in. Past
+ *  MAX_DEPTH the hash has no digits left, and a leaf holds any number of
+ *  files.
+ *  Every node is identified by the SHA-1 of its canonical encoding: the
+ *  depth, then "filename:blobID;" in name order for a leaf, or
+ *  "digit:hash:size;" for each child of an inner node.
+ *
+ *  Trees are immutable. withChanges shares every untouched node with the
+ *  parent tree, and only builds and re-hashes the nodes on the paths from
+ *  the changed files to the root: a leaf of at most LEAF_MAX files and
+ *  inner nodes of FANOUT entries, about log16(n / LEAF_MAX) of them for a
+ *  tree of n files. A commit changing c files so costs O(c log n),
+ *  whatever the size of the tree; a split or a collapse only touches the
+ *  LEAF_MAX files of one node.
+ *
+ *  Persistence: the root node is the tree of a commit, stored apart from
+ *  the commit header in the trees directory under the hash of the tree.
+ *  Every node is its own content-addressed object in the same directory,
+ *  so commits share unchanged subtrees on disk, saving a commit only
+ *  writes the nodes it built, and a loaded tree reads a node the first
+ *  time a lookup passes through it.
+ *
+ *  @author Li Yanzhuo
+ */
+class FileTree {
+    static final int FANOUT = 16;
+    /** A node of more files than this is split, unless it is at MAX_DEPTH. */
+    static final int LEAF_MAX = 64;
+    /** The depth of the last digit of the 32-bit name hash. */
+    static final int MAX_DEPTH = 8;
+
+    /** A node of the trie, stored under the hash of its encoding. */
+    static class Node implements Serializable {
+        final int depth;
+        final int size;
+        /** The files of a leaf, in name order; null for an inner node. */
+        final TreeMap<String, String> files;
+        /** The hashes of the children of an inner node, null where empty;
+         *  null for a leaf. */
+        final String[] childHashes;
+        /** The number of files under each child of an inner node. */
+        final int[] childSizes;
+        final String hash;
+        /** The children read or built so far; a null entry with a hash is not loaded yet. */
+        private transient Node[] children;
+        /** Whether the node was built in this run and save must write it. */
+        private transient boolean unsaved;
+
+        /** A leaf holding FILES. */
+        Node(int depth, TreeMap<String, String> files) {
+            this.depth = depth;
+            this.size = files.size();
+            this.files = files;
+            this.childHashes = null;
+            this.childSizes = null;
+            this.hash = Utils.sha1(encoding());
+            this.unsaved = true;
+        }
+
+        /** An inner node with the given children; CHILDREN holds the ones
+         *  in memory, and may miss unchanged ones that are not loaded. */
+        Node(int depth, String[] childHashes, int[] childSizes, Node[] children) {
+            this.depth = depth;
+            this.files = null;
+            this.childHashes = childHashes;
+            this.childSizes = childSizes;
+            this.children = children;
+            int total = 0;
+            for (int childSize : childSizes) {
+                total += childSize;
+            }
+            this.size = total;
+            this.hash = Utils.sha1(encoding());
+            this.unsaved = true;
+        }
+
+        boolean isLeaf() {
+            return files != null;
+        }
+
+        private String encoding() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(depth).append('\n');
+            if (isLeaf()) {
+                for (Map.Entry<String, String> entry : files.entrySet()) {
+                    sb.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
+                }
+            } else {
+                for (int i = 0; i < FANOUT; i++) {
+                    if (childHashes[i] != null) {
+                        sb.append(i).append(":").append(childHashes[i]).append(":")
+                                .append(childSizes[i]).append(";");
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        /** Recompute the hash from the entries and compare it with the stored ID. */
+        boolean hasValidHash(String storedID) {
+            if (!isLeaf() && (childHashes.length != FANOUT || childSizes.length != FANOUT)) {
+                return false;
+            }
+            return hash.equals(storedID) && hash.equals(Utils.sha1(encoding()));
+        }
+
+        /** Return the hashes of the children of an inner node, none for a leaf. */
+        List<String> childHashList() {
+            List<String> hashes = new ArrayList<>();
+            if (!isLeaf()) {
+                for (String childHash : childHashes) {
+                    if (childHash != null) {
+                        hashes.add(childHash);
+                    }
+                }
+            }
+            return hashes;
+        }
+
+        /** Return child I of an inner node, reading it if needed, or null if empty. */
+        Node child(int i) {
+            if (childHashes[i] == null) {
+                return null;
+            }
+            if (children == null) {
+                children = new Node[FANOUT];
+            }
+            if (children[i] == null) {
+                children[i] = loadNode(childHashes[i]);
+            }
+            return children[i];
+        }
+    }
+
+    private final Node root;
+
+    /** The empty tree of the initial commit. */
+    FileTree() {
+        this(new Node(0, new TreeMap<>()));
+    }
+
+    private FileTree(Node root) {
+        this.root = root;
+    }
+
+    /** Return the digit of the name hash of FILENAME that picks its child at DEPTH. */
+    private static int digit(String fileName, int depth) {
+        int h = fileName.hashCode() * 0x9E3779B9;
+        return (h >>> (28 - 4 * depth)) & (FANOUT - 1);
+    }
+
+    /** Return the node at DEPTH holding exactly FILES, or null if there are none. */
+    private static Node build(int depth, TreeMap<String, String> files) {
+        if (files.isEmpty()) {
+            return null;
+        }
+        if (files.size() <= LEAF_MAX || depth == MAX_DEPTH) {
+            return new Node(depth, files);
+        }
+        List<TreeMap<String, String>> parts = new ArrayList<>(FANOUT);
+        for (int i = 0; i < FANOUT; i++) {
+            parts.add(new TreeMap<>());
+        }
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            parts.get(digit(entry.getKey(), depth)).put(entry.getKey(), entry.getValue());
+        }
+        String[] hashes = new String[FANOUT];
+        int[] sizes = new int[FANOUT];
+        Node[] children = new Node[FANOUT];
+        for (int i = 0; i < FANOUT; i++) {
+            children[i] = build(depth + 1, parts.get(i));
+            if (children[i] != null) {
+                hashes[i] = children[i].hash;
+                sizes[i] = children[i].size;
+            }
+        }
+        return new Node(depth, hashes, sizes, children);
+    }
+
+    /** Return the node at DEPTH that holds the files of NODE (null if empty)
+     *  with CHANGES applied. Only the children with a change are rebuilt. */
+    private static Node apply(Node node, int depth, Map<String, String> changes) {
+        if (node == null || node.isLeaf()) {
+            TreeMap<String, String> files = node == null ? new TreeMap<>() : new TreeMap<>(node.files);
+            for (Map.Entry<String, String> entry : changes.entrySet()) {
+                if (entry.getValue().equals("REMOVE")) {
+                    files.remove(entry.getKey());
+                } else {
+                    files.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return build(depth, files);
+        }
+        List<Map<String, String>> parts = new ArrayList<>(FANOUT);
+        for (int i = 0; i < FANOUT; i++) {
+            parts.add(new HashMap<>());
+        }
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            parts.get(digit(entry.getKey(), depth)).put(entry.getKey(), entry.getValue());
+        }
+        String[] hashes = node.childHashes.clone();
+        int[] sizes = node.childSizes.clone();
+        Node[] children = node.children == null ? new Node[FANOUT] : node.children.clone();
+        int size = 0;
+        for (int i = 0; i < FANOUT; i++) {
+            if (!parts.get(i).isEmpty()) {
+                Node child = apply(node.child(i), depth + 1, parts.get(i));
+                children[i] = child;
+                hashes[i] = child == null ? null : child.hash;
+                sizes[i] = child == null ? 0 : child.size;
+            }
+            size += sizes[i];
+        }
+        Node result = new Node(depth, hashes, sizes, children);
+        if (size <= LEAF_MAX) {
+            // small enough to be a leaf again
+            TreeMap<String, String> files = new TreeMap<>();
+            collect(result, files);
+            return build(depth, files);
+        }
+        return result;
+    }
+
+    /** Add every file under NODE to FILES. */
+    private static void collect(Node node, Map<String, String> files) {
+        if (node == null) {
+            return;
+        }
+        if (node.isLeaf()) {
+            files.putAll(node.files);
+            return;
+        }
+        for (int i = 0; i < FANOUT; i++) {
+            collect(node.child(i), files);
+        }
+    }
+
+    /** Return a new tree with the staged CHANGES applied: a blob ID adds or
+     *  replaces a file, and "REMOVE" removes it. This tree is not modified. */
+    FileTree withChanges(Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        Node newRoot = apply(root, 0, changes);
+        return new FileTree(newRoot == null ? new Node(0, new TreeMap<>()) : newRoot);
+    }
+
+    String getHash() {
+        return root.hash;
+    }
+
+    int size() {
+        return root.size;
+    }
+
+    /** Return the blob ID of the file, or null if it is not in the tree. */
+    String get(String fileName) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.child(digit(fileName, node.depth));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.files.get(fileName);
+    }
+
+    boolean containsKey(String fileName) {
+        return get(fileName) != null;
+    }
+
+    /** Return a fresh map with every file of the tree. */
+    HashMap<String, String> toMap() {
+        HashMap<String, String> files = new HashMap<>();
+        collect(root, files);
+        return files;
+    }
+
+    /** Return the names of the files whose blob differs between this tree and
+     *  OTHER, including files only present in one of them. Subtrees with the
+     *  same hash are skipped without being read. */
+    List<String> changedFiles(FileTree other) {
+        List<String> changed = new ArrayList<>();
+        diff(root, other.root, changed);
+        return changed;
+    }
+
+    private static void diff(Node mine, Node theirs, List<String> changed) {
+        if (mine == theirs || (mine != null && theirs != null && mine.hash.equals(theirs.hash))) {
+            return;
+        }
+        if (mine != null && theirs != null && !mine.isLeaf() && !theirs.isLeaf()) {
+            for (int i = 0; i < FANOUT; i++) {
+                if (!Objects.equals(mine.childHashes[i], theirs.childHashes[i])) {
+                    diff(mine.child(i), theirs.child(i), changed);
+                }
+            }
+            return;
+        }
+        // a leaf or nothing on one side: compare the files under both
+        Map<String, String> myFiles = new HashMap<>();
+        Map<String, String> theirFiles = new HashMap<>();
+        collect(mine, myFiles);
+        collect(theirs, theirFiles);
+        for (Map.Entry<String, String> entry : myFiles.entrySet()) {
+            if (!entry.getValue().equals(theirFiles.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String fileName : theirFiles.keySet()) {
+            if (!myFiles.containsKey(fileName)) {
+                changed.add(fileName);
+            }
+        }
+    }
+
+    /** Persistence: write the nodes built by withChanges, children before
+     *  their parents. Objects that already exist are not rewritten. */
+    void save() {
+        save(root);
+    }
+
+    private static void save(Node node) {
+        if (node == null || !node.unsaved) {
+            return;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                save(child);
+            }
+        }
+        if (!ObjectType.TREE.contains(node.hash)) {
+            ObjectType.TREE.writeObject(node.hash, node);
+        }
+        node.unsaved = false;
+    }
+
+    /** Persistence: read the root node of a tree; the others are read lazily. */
+    static FileTree load(String treeID) {
+        long start = Trace.start();
+        Node root = loadNode(treeID);
+        if (root.depth != 0) {
+            throw Utils.error("Not the root of a tree: " + treeID);
+        }
+        Trace.end("load-tree", start);
+        return new FileTree(root);
+    }
+
+    /** Persistence: read one node given its hash. */
+    static Node loadNode(String nodeHash) {
+        long start = Trace.start();
+        Node node = ObjectType.TREE.readObject(nodeHash, Node.class);
+        if (node == null) {
+            throw Utils.error("Can't find the tree: " + nodeHash);
+        }
+        Trace.end("load-tree-node", start);
+        return node;
+    }
+}
@@ -0,0 +1,110 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/** Tests of the hash trie of FileTree, with the objects kept in memory. */
+public class FileTreeTest {
+    private File dir;
+
+    @Before
+    public void useMemoryStore() throws IOException {
+        dir = Files.createTempDirectory("gitlet-tree").toFile();
+        Repository.useWorktree(new Worktree(dir));
+        ObjectType.useDatabase(new MemoryObjectDatabase());
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private static Map<String, String> files(int from, int to, String version) {
+        Map<String, String> files = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            files.put("file-" + i + ".txt", Utils.sha1(version + i));
+        }
+        return files;
+    }
+
+    @Test
+    public void shapeOnlyDependsOnTheFiles() {
+        FileTree direct = new FileTree().withChanges(files(0, 3000, "a"));
+
+        // the same files through many small changes, with removals on the way
+        FileTree stepwise = new FileTree();
+        Random random = new Random(61);
+        for (int i = 0; i < 3000; i += 100) {
+            stepwise = stepwise.withChanges(files(i, i + 100, "old"));
+            Map<String, String> removals = new HashMap<>();
+            for (int j = 0; j < 20; j++) {
+                removals.put("file-" + random.nextInt(i + 100) + ".txt", "REMOVE");
+            }
+            stepwise = stepwise.withChanges(removals);
+        }
+        stepwise = stepwise.withChanges(files(0, 3000, "a"));
+
+        assertEquals(direct.getHash(), stepwise.getHash());
+        assertEquals(3000, stepwise.size());
+        assertEquals(direct.toMap(), stepwise.toMap());
+        assertEquals(Utils.sha1("a" + 1234), stepwise.get("file-1234.txt"));
+        assertNull(stepwise.get("file-3000.txt"));
+    }
+
+    @Test
+    public void shrinkingCollapsesBackToALeaf() {
+        FileTree big = new FileTree().withChanges(files(0, 1000, "a"));
+        Map<String, String> removals = new HashMap<>();
+        for (int i = 40; i < 1000; i++) {
+            removals.put("file-" + i + ".txt", "REMOVE");
+        }
+        FileTree small = big.withChanges(removals);
+        assertEquals(new FileTree().withChanges(files(0, 40, "a")).getHash(), small.getHash());
+
+        Map<String, String> all = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            all.put("file-" + i + ".txt", "REMOVE");
+        }
+        assertEquals(new FileTree().getHash(), small.withChanges(all).getHash());
+    }
+
+    @Test
+    public void aCommitOnlyWritesThePathToTheRoot() {
+        FileTree tree = new FileTree().withChanges(files(0, 20000, "a"));
+        tree.save();
+        int stored = ObjectType.TREE.allIDs().size();
+
+        FileTree changed = tree.withChanges(Map.of("file-77.txt", Utils.sha1("b")));
+        changed.save();
+        // one node per level: 20000 files are about three levels deep
+        int written = ObjectType.TREE.allIDs().size() - stored;
+        assertTrue("wrote " + written + " nodes", written >= 2 && written <= 4);
+        assertEquals(List.of("file-77.txt"), changed.changedFiles(tree));
+    }
+
+    @Test
+    public void savedTreesLoadLazily() {
+        FileTree tree = new FileTree().withChanges(files(0, 5000, "a"));
+        tree.save();
+        FileTree loaded = FileTree.load(tree.getHash());
+        assertEquals(5000, loaded.size());
+        assertEquals(Utils.sha1("a" + 4321), loaded.get("file-4321.txt"));
+        assertEquals(tree.toMap(), loaded.toMap());
+
+        FileTree changed = loaded.withChanges(Map.of("file-1.txt", "REMOVE",
+                "new.txt", Utils.sha1("new")));
+        List<String> diff = new ArrayList<>(changed.changedFiles(loaded));
+        Collections.sort(diff);
+        assertEquals(List.of("file-1.txt", "new.txt"), diff);
+    }
+}
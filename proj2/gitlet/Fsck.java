@@ -0,0 +1,357 @@
+package gitlet;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/** This class implements the gitlet fsck command, which verifies the object store.
+ *  1.every chunk, blob, tree object, commit and tag is read back and re-hashed, and
+ *  its hash ID must match both its content and the name of the file it is
+ *  stored in. A chunked blob is re-hashed over the concatenation of its chunks,
+ *  read one chunk at a time.
+ *  2.every chunk of a blob, tree of a commit, child of a tree node and blob
+ *  referenced by a tree leaf or the staging area must exist.
+ *  3.every ref (loose or packed), stash entry and reflog entry must point to
+ *  an existing commit or tag object, every tag object to an existing commit,
+ *  and every parent of a reachable commit must exist.
+ *  4.tag objects that no ref points to,
+ *  unreachable commits that are not the parent of another commit, blobs
+ *  that no tree or staging area references, and chunks that no blob lists,
+ *  are reported as dangling.
+ *  5.every pack must be listed in the multi-pack index and every pack it
+ *  lists must exist.
+ *  Loose and packed objects are verified the same way, from their stored bytes.
+ *  The objects are verified in parallel, one hash-prefix subdirectory or one
+ *  pack per task, and only one object per worker is held in memory at a time,
+ *  so stores larger than the heap can be checked. Only the object IDs are kept.
+ *
+ *  @author Li Yanzhuo
+ */
+class Fsck {
+    private final Set<String> chunkIDs = ConcurrentHashMap.newKeySet();
+    private final Set<String> referencedChunkIDs = ConcurrentHashMap.newKeySet();
+    private final Set<String> blobIDs = ConcurrentHashMap.newKeySet();
+    /** Tree node ID to the IDs of its children, none for a leaf. */
+    private final Map<String, List<String>> treeChildren = new ConcurrentHashMap<>();
+    /** The IDs of the tree nodes that can be the tree of a commit. */
+    private final Set<String> rootTreeIDs = ConcurrentHashMap.newKeySet();
+    private final Set<String> referencedBlobIDs = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<String>> commitParents = new ConcurrentHashMap<>();
+    /** Tag object ID to the commit it points to. */
+    private final Map<String, String> tagTargets = new ConcurrentHashMap<>();
+    private final Queue<String> problems = new ConcurrentLinkedQueue<>();
+    private final LongAdder checkedObjects = new LongAdder();
+    private final LongAdder checkedBytes = new LongAdder();
+
+    /** Run every check, print the problems found and the throughput. */
+    void run() {
+        long start = System.nanoTime();
+        List<Pack> packs = checkPacks();
+        verifyAll(ObjectType.CHUNK, packs, this::verifyChunk);
+        verifyAll(ObjectType.BLOB, packs, this::verifyBlob);
+        verifyAll(ObjectType.TREE, packs, this::verifyTree);
+        checkTrees();
+        verifyAll(ObjectType.COMMIT, packs, this::verifyCommit);
+        verifyAll(ObjectType.TAG, packs, this::verifyTag);
+        checkReferences();
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+
+        List<String> sorted = new ArrayList<>(problems);
+        Collections.sort(sorted);
+        for (String problem : sorted) {
+            System.out.println(problem);
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Checked %d objects (%d bytes) in %d ms, "
+                        + "%.0f objects/s, %.2f MB/s.%n",
+                checkedObjects.sum(), checkedBytes.sum(), elapsedNanos / 1_000_000,
+                checkedObjects.sum() / seconds, checkedBytes.sum() / seconds / 1e6);
+    }
+
+    /** Report the packs missing from the multi-pack index or from the disk,
+     *  and return the readable packs. */
+    private List<Pack> checkPacks() {
+        Set<String> indexed = new HashSet<>();
+        for (Pack pack : MultiPackIndex.get().getPacks()) {
+            indexed.add(pack.getName());
+            if (!pack.file.isFile()) {
+                problems.add("missing pack " + pack.getName() + " in the multi-pack index");
+            }
+        }
+        List<Pack> packs = new ArrayList<>();
+        for (Pack pack : Pack.all()) {
+            if (!indexed.contains(pack.getName())) {
+                problems.add("pack " + pack.getName() + " not in the multi-pack index");
+            }
+            try {
+                pack.entries();
+                packs.add(pack);
+            } catch (GitletException e) {
+                problems.add("corrupt pack " + pack.getName());
+            }
+        }
+        return packs;
+    }
+
+    /** Verify every loose and packed object of TYPE with VERIFIER,
+     *  which gets the ID and the stored bytes of the object. */
+    private void verifyAll(ObjectType type, List<Pack> packs, BiConsumer<String, byte[]> verifier) {
+        File[] subDirs = type.looseDir().listFiles(File::isDirectory);
+        if (subDirs != null) {
+            Arrays.stream(subDirs).parallel().forEach(subDir -> {
+                for (String id : Utils.plainFilenamesIn(subDir)) {
+                    verify(id, Utils.readContents(Utils.join(subDir, id)), verifier);
+                }
+            });
+        }
+        packs.parallelStream().forEach(pack -> {
+            for (Pack.Entry entry : pack.entries()) {
+                if (entry.type == type) {
+                    verify(entry.id, pack.read(entry.offset, entry.length), verifier);
+                }
+            }
+        });
+    }
+
+    private void verify(String id, byte[] bytes, BiConsumer<String, byte[]> verifier) {
+        checkedObjects.increment();
+        checkedBytes.add(bytes.length);
+        verifier.accept(id, bytes);
+    }
+
+    /** Chunks are raw bytes, named by the SHA-1 of the bytes. */
+    private void verifyChunk(String chunkID, byte[] bytes) {
+        if (!Utils.sha1(bytes).equals(chunkID)) {
+            problems.add("hash mismatch in chunk " + chunkID);
+        }
+        chunkIDs.add(chunkID);
+    }
+
+    private void verifyBlob(String blobID, byte[] bytes) {
+        Blob blob;
+        try {
+            blob = Utils.readObject(bytes, Blob.class);
+        } catch (IllegalArgumentException e) {
+            problems.add("corrupt blob " + blobID);
+            return;
+        }
+        if (blob.isChunked()) {
+            boolean complete = true;
+            for (String chunkID : blob.getChunkIDs()) {
+                referencedChunkIDs.add(chunkID);
+                if (!chunkIDs.contains(chunkID)) {
+                    problems.add("missing chunk " + chunkID + " in blob " + blobID);
+                    complete = false;
+                }
+            }
+            blobIDs.add(blobID);
+            if (complete && (!blob.getHashID().equals(blobID)
+                    || !chunksHashTo(blob.getChunkIDs(), blobID))) {
+                problems.add("hash mismatch in blob " + blobID);
+            }
+            return;
+        }
+        if (blob.isLargeFile() && !LargeFiles.contains(blobID)) {
+            problems.add("missing large file " + blobID);
+            blobIDs.add(blobID);
+            return;
+        }
+        if (!blob.getHashID().equals(blobID) || !blob.hasValidHashID()) {
+            problems.add("hash mismatch in blob " + blobID);
+        }
+        blobIDs.add(blobID);
+    }
+
+    /** Whether the chunks CHUNKIDS each match their ID and together hash to
+     *  BLOBID. They are read one at a time into one digest, so a chunked blob
+     *  is never held whole on the heap. */
+    private static boolean chunksHashTo(String[] chunkIDs, String blobID) {
+        MessageDigest whole;
+        try {
+            whole = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+        for (String chunkID : chunkIDs) {
+            byte[] chunk = ObjectType.CHUNK.read(chunkID);
+            if (chunk == null || !Utils.sha1(chunk).equals(chunkID)) {
+                return false;
+            }
+            whole.update(chunk);
+        }
+        return Pack.toHex(whole.digest()).equals(blobID);
+    }
+
+    /** The tree objects are the nodes of the file trees, see FileTree. */
+    private void verifyTree(String treeID, byte[] bytes) {
+        FileTree.Node node;
+        try {
+            node = Utils.readObject(bytes, FileTree.Node.class);
+        } catch (IllegalArgumentException e) {
+            problems.add("corrupt tree " + treeID);
+            return;
+        }
+        if (!node.hasValidHash(treeID)) {
+            problems.add("hash mismatch in tree " + treeID);
+        }
+        if (node.isLeaf()) {
+            for (Map.Entry<String, String> entry : node.files.entrySet()) {
+                referencedBlobIDs.add(entry.getValue());
+                if (!blobIDs.contains(entry.getValue())) {
+                    problems.add("missing blob " + entry.getValue() + " for "
+                            + entry.getKey() + " in tree " + treeID);
+                }
+            }
+        }
+        if (node.depth == 0) {
+            rootTreeIDs.add(treeID);
+        }
+        treeChildren.put(treeID, node.childHashList());
+    }
+
+    private void checkTrees() {
+        for (Map.Entry<String, List<String>> entry : treeChildren.entrySet()) {
+            for (String childID : entry.getValue()) {
+                if (!treeChildren.containsKey(childID)) {
+                    problems.add("missing tree " + childID + " in tree " + entry.getKey());
+                }
+            }
+        }
+    }
+
+    private void verifyCommit(String commitID, byte[] bytes) {
+        Commit commit;
+        try {
+            commit = Utils.readObject(bytes, Commit.class);
+        } catch (IllegalArgumentException e) {
+            problems.add("corrupt commit " + commitID);
+            return;
+        }
+        if (!commit.getCommitID().equals(commitID) || !commit.hasValidHashID()) {
+            problems.add("hash mismatch in commit " + commitID);
+        }
+        if (!rootTreeIDs.contains(commit.getTreeID())) {
+            problems.add("missing tree " + commit.getTreeID() + " in commit " + commitID);
+        }
+        List<String> parents = new ArrayList<>(2);
+        if (commit.getFirstParentID() != null) {
+            parents.add(commit.getFirstParentID());
+        }
+        if (commit.getSecondParentID() != null) {
+            parents.add(commit.getSecondParentID());
+        }
+        commitParents.put(commitID, parents);
+    }
+
+    private void verifyTag(String tagID, byte[] bytes) {
+        Tag tag;
+        try {
+            tag = Utils.readObject(bytes, Tag.class);
+        } catch (IllegalArgumentException e) {
+            problems.add("corrupt tag " + tagID);
+            return;
+        }
+        if (!tag.getHashID().equals(tagID) || !tag.hasValidHashID()) {
+            problems.add("hash mismatch in tag " + tagID);
+        }
+        if (!commitParents.containsKey(tag.getTargetID())) {
+            problems.add("missing commit " + tag.getTargetID() + " in tag " + tagID);
+        }
+        tagTargets.put(tagID, tag.getTargetID());
+    }
+
+    /** Check the refs and the staging area, then walk the commits reachable
+     *  from the refs and report the ones that are missing or dangling. */
+    private void checkReferences() {
+        Map<String, String> refs = new TreeMap<>();
+        Set<String> referencedTagIDs = new HashSet<>();
+        for (Map.Entry<String, String> ref : Refs.list("refs/").entrySet()) {
+            String id = ref.getValue();
+            if (tagTargets.containsKey(id)) {
+                referencedTagIDs.add(id);
+                id = tagTargets.get(id);
+            }
+            refs.put(ref.getKey(), id);
+        }
+        for (String tagID : tagTargets.keySet()) {
+            if (!referencedTagIDs.contains(tagID)) {
+                problems.add("dangling tag " + tagID);
+            }
+        }
+        List<Worktree> worktrees = Worktree.all(Repository.commonPath());
+        for (Worktree worktree : worktrees) {
+            String headContent = worktree.head();
+            if (headContent.startsWith("ref:")) {
+                String headRef = headContent.substring(5).trim();
+                if (!Refs.exists(headRef)) {
+                    problems.add(worktree.refName("HEAD") + " points to missing ref " + headRef);
+                }
+            } else {
+                refs.put(worktree.refName("HEAD"), headContent);
+            }
+        }
+        List<String> stashEntries = Repository.loadStashEntries();
+        for (int i = 0; i < stashEntries.size(); i++) {
+            refs.put("stash@{" + i + "}", stashEntries.get(i));
+        }
+        refs.putAll(RefLog.allEntries());
+
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> reachable = new HashSet<>();
+        for (Map.Entry<String, String> ref : refs.entrySet()) {
+            if (!commitParents.containsKey(ref.getValue())) {
+                problems.add("dangling ref " + ref.getKey() + " -> " + ref.getValue());
+            } else if (reachable.add(ref.getValue())) {
+                stack.push(ref.getValue());
+            }
+        }
+        while (!stack.isEmpty()) {
+            String commitID = stack.pop();
+            for (String parentID : commitParents.get(commitID)) {
+                if (!commitParents.containsKey(parentID)) {
+                    problems.add("missing parent " + parentID + " of commit " + commitID);
+                } else if (reachable.add(parentID)) {
+                    stack.push(parentID);
+                }
+            }
+        }
+        Set<String> parentIDs = new HashSet<>();
+        for (List<String> parents : commitParents.values()) {
+            parentIDs.addAll(parents);
+        }
+        for (String commitID : commitParents.keySet()) {
+            if (!reachable.contains(commitID) && !parentIDs.contains(commitID)) {
+                problems.add("dangling commit " + commitID);
+            }
+        }
+
+        for (Worktree worktree : worktrees) {
+            for (Map.Entry<String, String> entry : worktree.loadIndex().entrySet()) {
+                String blobID = entry.getValue();
+                if (blobID.equals("REMOVE")) {
+                    continue;
+                }
+                referencedBlobIDs.add(blobID);
+                if (!blobIDs.contains(blobID)) {
+                    problems.add("missing blob " + blobID + " for " + entry.getKey()
+                            + " in the staging area");
+                }
+            }
+        }
+        for (String blobID : blobIDs) {
+            if (!referencedBlobIDs.contains(blobID)) {
+                problems.add("dangling blob " + blobID);
+            }
+        }
+        for (String chunkID : chunkIDs) {
+            if (!referencedChunkIDs.contains(chunkID)) {
+                problems.add("dangling chunk " + chunkID);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package gitlet;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/** This class implements the gitlet gc command.
+ *  Objects written by add and commit are never deleted by the other commands,
+ *  so unstaged or overwritten blobs and commits left behind by reset stay in
+ *  the store until gc removes them. A commit left behind stays reachable from
+ *  the reflog until its entries expire, so the collector first expires the
+ *  reflog entries older than gc.reflogExpire (see RefLog), then works in two
+ *  phases:
+ *  1.mark: starting from every ref (branches, remote branches and tags),
+ *  the detached HEADs, the stash entries, the reflog entries left and the staging
+ *  areas of all the worktrees, walk the commit graph and record every reachable commit, tree object
+ *  and blob. The walk goes level by level, and every commit of a level is
+ *  loaded in parallel. Commits share most tree nodes, so each node, and
+ *  the subtree below it, is only read the first time it is marked.
+ *  2.sweep: delete every loose object that was not marked
+ *  and is older than the grace period, so that objects written by
+ *  a concurrent add are not removed before they are referenced.
+ *  Chunks are swept last: a chunk is kept if any blob left after the sweep,
+ *  reachable or still in its grace period, lists it. The files of the large
+ *  file store are swept the same way, kept if a blob left points to them.
+ *  Packs are never modified, so a pack older than the grace period that holds
+ *  unmarked objects is rewritten without them, and the multi-pack index is
+ *  rebuilt before the old pack is deleted. Newer packs are kept whole.
+ *
+ *  @author Li Yanzhuo
+ */
+class GarbageCollector {
+    /** Default grace period: two weeks, as in real Git. */
+    static final long DEFAULT_GRACE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+
+    private final Set<String> reachableCommits = ConcurrentHashMap.newKeySet();
+    private final Set<String> reachableTrees = ConcurrentHashMap.newKeySet();
+    private final Set<String> reachableBlobs = ConcurrentHashMap.newKeySet();
+    private final Set<String> reachableTags = new HashSet<>();
+    private final long graceMillis;
+    private int removedObjects;
+    private long reclaimedBytes;
+
+    GarbageCollector(long graceMillis) {
+        this.graceMillis = graceMillis;
+    }
+
+    /** Run both phases and return the report printed by gitlet gc. */
+    String run() {
+        RefLog.expire(System.currentTimeMillis() / 1000 - Config.getLong(Config.REFLOG_EXPIRE));
+        mark();
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        sweep(ObjectType.COMMIT.looseDir(), reachableCommits, cutoff);
+        sweep(ObjectType.TREE.looseDir(), reachableTrees, cutoff);
+        sweep(ObjectType.BLOB.looseDir(), reachableBlobs, cutoff);
+        sweep(ObjectType.TAG.looseDir(), reachableTags, cutoff);
+        Set<String> keptBlobs = keptBlobIDs(cutoff);
+        Set<String> liveChunks = liveChunks(keptBlobs);
+        sweep(ObjectType.CHUNK.looseDir(), liveChunks, cutoff);
+        sweep(LargeFiles.objectsDir(), keptBlobs, cutoff);
+        Map<ObjectType, Set<String>> live = new EnumMap<>(ObjectType.class);
+        live.put(ObjectType.COMMIT, reachableCommits);
+        live.put(ObjectType.TREE, reachableTrees);
+        live.put(ObjectType.BLOB, reachableBlobs);
+        live.put(ObjectType.CHUNK, liveChunks);
+        live.put(ObjectType.TAG, reachableTags);
+        sweepPacks(live, cutoff);
+        return "Removed " + removedObjects + " unreachable objects, reclaimed "
+                + reclaimedBytes + " bytes.";
+    }
+
+    /** Mark phase: a parallel breadth-first walk from all the roots. */
+    private void mark() {
+        for (Worktree worktree : Worktree.all(Repository.commonPath())) {
+            for (String blobID : worktree.loadIndex().values()) {
+                if (!blobID.equals("REMOVE")) {
+                    reachableBlobs.add(blobID);
+                }
+            }
+        }
+
+        List<String> frontier = new ArrayList<>();
+        for (String commitID : rootCommitIDs()) {
+            if (reachableCommits.add(commitID)) {
+                frontier.add(commitID);
+            }
+        }
+        while (!frontier.isEmpty()) {
+            frontier = frontier.parallelStream()
+                    .map(this::markCommit)
+                    .flatMap(List::stream)
+                    .filter(reachableCommits::add)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /** Mark the tree node TREEID, the nodes below it and their blobs.
+     *  A node marked before was already walked, with everything below it. */
+    private void markTree(String treeID) {
+        if (!reachableTrees.add(treeID)) {
+            return;
+        }
+        FileTree.Node node = FileTree.loadNode(treeID);
+        if (node.isLeaf()) {
+            reachableBlobs.addAll(node.files.values());
+        }
+        for (String childHash : node.childHashList()) {
+            markTree(childHash);
+        }
+    }
+
+    /** Mark the tree and blobs of the given commit and return its parents. */
+    private List<String> markCommit(String commitID) {
+        Commit commit = Commit.load(commitID);
+        markTree(commit.getTreeID());
+        List<String> parents = new ArrayList<>(2);
+        if (commit.getFirstParentID() != null) {
+            parents.add(commit.getFirstParentID());
+        }
+        if (commit.getSecondParentID() != null) {
+            parents.add(commit.getSecondParentID());
+        }
+        return parents;
+    }
+
+    /** Return the IDs of the blobs that are still stored after the loose
+     *  sweep, or that stay in their pack after sweepPacks. */
+    private Set<String> keptBlobIDs(long cutoff) {
+        Set<String> blobIDs = new HashSet<>();
+        File[] subDirs = ObjectType.BLOB.looseDir().listFiles(File::isDirectory);
+        if (subDirs != null) {
+            for (File subDir : subDirs) {
+                blobIDs.addAll(Utils.plainFilenamesIn(subDir));
+            }
+        }
+        for (Pack pack : Pack.all()) {
+            boolean recent = pack.file.lastModified() > cutoff;
+            for (Pack.Entry entry : pack.entries()) {
+                if (entry.type == ObjectType.BLOB
+                        && (recent || reachableBlobs.contains(entry.id))) {
+                    blobIDs.add(entry.id);
+                }
+            }
+        }
+        return blobIDs;
+    }
+
+    /** Return the chunk IDs listed by the blobs BLOBIDS. */
+    private Set<String> liveChunks(Set<String> blobIDs) {
+        Set<String> chunks = ConcurrentHashMap.newKeySet();
+        blobIDs.parallelStream().forEach(blobID -> {
+            Blob blob = ObjectType.BLOB.readObject(blobID, Blob.class);
+            if (blob.isChunked()) {
+                chunks.addAll(Arrays.asList(blob.getChunkIDs()));
+            }
+        });
+        return chunks;
+    }
+
+    /** Return the commit IDs stored in every ref, loose or packed, a detached
+     *  HEAD of any worktree, the stash and the reflogs. The tag objects of annotated tags are
+     *  marked, and the commits they point to are roots. */
+    private Set<String> rootCommitIDs() {
+        Set<String> roots = new HashSet<>();
+        for (String id : Refs.list("refs/").values()) {
+            if (ObjectType.TAG.contains(id)) {
+                reachableTags.add(id);
+                id = Tag.load(id).getTargetID();
+            }
+            roots.add(id);
+        }
+        for (Worktree worktree : Worktree.all(Repository.commonPath())) {
+            String headContent = worktree.head();
+            if (!headContent.startsWith("ref:")) {
+                roots.add(headContent);
+            }
+        }
+        roots.addAll(Repository.loadStashEntries());
+        roots.addAll(RefLog.allEntries().values());
+        return roots;
+    }
+
+    /** Sweep phase: delete the unmarked objects of one object directory
+     *  whose last modification is before the cutoff. */
+    private void sweep(File objectDir, Set<String> reachable, long cutoff) {
+        File[] subDirs = objectDir.listFiles();
+        if (subDirs == null) {
+            return;
+        }
+        for (File subDir : subDirs) {
+            File[] objects = subDir.listFiles();
+            if (objects == null) {
+                continue;
+            }
+            for (File object : objects) {
+                if (reachable.contains(object.getName())
+                        || object.lastModified() > cutoff) {
+                    continue;
+                }
+                long size = object.length();
+                if (object.delete()) {
+                    removedObjects++;
+                    reclaimedBytes += size;
+                }
+            }
+            if (Utils.isEmptyDirectory(subDir)) {
+                subDir.delete();
+            }
+        }
+    }
+
+    /** Rewrite every pack older than the cutoff that holds objects not in
+     *  LIVE, keeping only the live ones, then rebuild the multi-pack index
+     *  and delete the old packs. */
+    private void sweepPacks(Map<ObjectType, Set<String>> live, long cutoff) {
+        Map<String, Pack> kept = new LinkedHashMap<>();
+        List<Pack> rewritten = new ArrayList<>();
+        for (Pack pack : Pack.all()) {
+            if (pack.file.lastModified() > cutoff) {
+                kept.put(pack.getName(), pack);
+                continue;
+            }
+            List<Pack.Entry> liveEntries = new ArrayList<>();
+            int dead = 0;
+            long deadBytes = 0;
+            for (Pack.Entry entry : pack.entries()) {
+                if (live.get(entry.type).contains(entry.id)) {
+                    liveEntries.add(entry);
+                } else {
+                    dead++;
+                    deadBytes += entry.length;
+                }
+            }
+            if (dead == 0) {
+                kept.put(pack.getName(), pack);
+                continue;
+            }
+            Pack newPack = Pack.write(liveEntries);
+            if (newPack != null) {
+                kept.put(newPack.getName(), newPack);
+            }
+            rewritten.add(pack);
+            removedObjects += dead;
+            reclaimedBytes += deadBytes;
+        }
+        if (rewritten.isEmpty()) {
+            return;
+        }
+        MultiPackIndex.write(new ArrayList<>(kept.values()));
+        for (Pack pack : rewritten) {
+            pack.file.delete();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** The store of large files, in the manner of Git LFS. When blob.largeFiles
+ *  is set in the config, a working file of at least blob.largeFileThreshold
+ *  bytes is copied as it is into .gitlet/lfs/objects, named by its SHA-1, and
+ *  its blob only holds a pointer to it. The blob ID is the SHA-1 of the
+ *  content either way, so the same file stored inline or as a large file is
+ *  the same blob, and commits, trees and merges do not tell them apart.
+ *  A large file never goes through the heap on add, status or checkout: it
+ *  is hashed from memory-mapped windows of the file and copied between the
+ *  working directory and the store by the file system. The hash of every
+ *  large working file is cached with its size and modification time in
+ *  .gitlet/lfs-cache, one per worktree, so status and add only hash it again
+ *  after it changed.
+ *  Large files count as binary: they are never diffed or merged by lines.
+ *
+ *  @author Li Yanzhuo
+ */
+class LargeFiles {
+    /** The size of the windows a file is mapped in, to hash files over 2 GB. */
+    private static final long WINDOW = 1L << 30;
+
+    private LargeFiles() {
+    }
+
+    static File objectsDir() {
+        return Repository.commonPath("lfs", "objects");
+    }
+
+    static File objectFile(String id) {
+        return Utils.join(objectsDir(), id.substring(0, 2), id);
+    }
+
+    static File cacheFile() {
+        return Repository.worktreePath("lfs-cache");
+    }
+
+    /** Whether FILE is stored in the large file store rather than in its blob. */
+    static boolean isLarge(File file) {
+        return Config.getBoolean(Config.LARGE_FILES)
+                && file.length() >= Config.getLong(Config.LARGE_FILE_THRESHOLD);
+    }
+
+    static boolean contains(String id) {
+        return objectFile(id).isFile();
+    }
+
+    /** Return file name -> "size mtime hash" of the large working files of
+     *  the worktree, read on first use. */
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, String> hashCache() {
+        Worktree worktree = Repository.worktree();
+        if (worktree.largeFileHashes == null) {
+            worktree.largeFileHashes = cacheFile().isFile()
+                    ? Utils.readObject(cacheFile(), HashMap.class) : new HashMap<>();
+        }
+        return worktree.largeFileHashes;
+    }
+
+    private static String stamp(File file) {
+        return file.length() + " " + file.lastModified() + " ";
+    }
+
+    /** Return the SHA-1 of the working file FILE, hashed again only if its
+     *  size or modification time changed since the last time. */
+    static synchronized String hash(File file) {
+        String cached = hashCache().get(file.getName());
+        if (cached != null && cached.startsWith(stamp(file))) {
+            return cached.substring(stamp(file).length());
+        }
+        String id = sha1(file);
+        remember(file, id);
+        return id;
+    }
+
+    /** Record ID as the hash of the working file FILE as it is now. */
+    private static synchronized void remember(File file, String id) {
+        hashCache().put(file.getName(), stamp(file) + id);
+        Utils.writeObject(cacheFile(), hashCache());
+    }
+
+    /** Return the SHA-1 of the content of FILE, read from the file system. */
+    static String sha1(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Object> windows = new ArrayList<>();
+            for (long pos = 0; pos < size; pos += WINDOW) {
+                windows.add(channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                        Math.min(WINDOW, size - pos)));
+            }
+            return Utils.sha1(windows);
+        } catch (IOException e) {
+            throw Utils.error("Can't read the file: " + file.getName());
+        }
+    }
+
+    /** Copy FILE, whose hash is ID, into the store unless it is already
+     *  there. It is written under a temporary name and moved into place, so
+     *  the store never holds a partial file under an ID. */
+    static void store(File file, String id) {
+        File target = objectFile(id);
+        if (target.isFile()) {
+            return;
+        }
+        target.getParentFile().mkdirs();
+        File tmpFile = new File(target.getPath() + ".tmp");
+        try {
+            Files.copy(file.toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw Utils.error("Can't store the large file: " + file.getName());
+        }
+    }
+
+    /** Return the content of the stored large file ID. */
+    static byte[] read(String id) {
+        if (!contains(id)) {
+            throw Utils.error("Can't find the large file: " + id);
+        }
+        return Utils.readContents(objectFile(id));
+    }
+
+    /** Write the stored large file ID to TARGET, replacing it. Its hash is
+     *  cached, so that status does not hash the file it just wrote. */
+    static void copyTo(String id, File target) {
+        if (!contains(id)) {
+            throw Utils.error("Can't find the large file: " + id);
+        }
+        try {
+            Files.copy(objectFile(id).toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw Utils.error("Can't write the file: " + target.getName());
+        }
+        remember(target, id);
+    }
+}
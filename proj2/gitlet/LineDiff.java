@@ -0,0 +1,360 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A line diff of two versions of a file, printed in the unified format.
+ *  The lines are never copied into Strings: each side is a buffer (a
+ *  memory-mapped working file or the content of a blob) with the start
+ *  offset and a hash of every line, and two lines are only compared byte
+ *  by byte when their hashes are equal.
+ *
+ *  The shortest edit script is found with the linear-space variant of
+ *  Myers' algorithm: the middle snake of an optimal path is found by
+ *  searching forward from the start and backward from the end at the same
+ *  time, and the two halves around it are solved recursively. Besides the
+ *  line offsets, it only needs two diagonal arrays and one flag per line,
+ *  so memory grows linearly with the number of lines, whatever the number
+ *  of differences.
+ *
+ *  @author Li Yanzhuo
+ */
+class LineDiff {
+    /** Unchanged lines printed around every change. */
+    static final int CONTEXT = 3;
+    /** A side with a NUL byte in its first BINARY_PROBE bytes is binary, as in Git. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** The lines of one side of the diff. */
+    static class Lines {
+        final ByteBuffer content;
+        final int count;
+        /** Line i is content[starts[i], starts[i + 1]), including its newline. */
+        final int[] starts;
+        final int[] hashes;
+
+        Lines(ByteBuffer content) {
+            this.content = content;
+            int length = content.limit();
+            int lines = 0;
+            for (int i = 0; i < length; i++) {
+                if (content.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            if (length > 0 && content.get(length - 1) != '\n') {
+                lines++;
+            }
+            this.count = lines;
+            this.starts = new int[lines + 1];
+            this.hashes = new int[lines];
+            int line = 0;
+            int hash = 0x811C9DC5;
+            for (int i = 0; i < length; i++) {
+                byte b = content.get(i);
+                hash = (hash ^ (b & 0xFF)) * 0x01000193;
+                if (b == '\n') {
+                    hashes[line] = hash;
+                    line++;
+                    starts[line] = i + 1;
+                    hash = 0x811C9DC5;
+                }
+            }
+            if (line < lines) {
+                hashes[line] = hash;
+                starts[lines] = length;
+            }
+        }
+
+        int length(int line) {
+            return starts[line + 1] - starts[line];
+        }
+
+        boolean endsWithNewline(int line) {
+            return content.get(starts[line + 1] - 1) == '\n';
+        }
+    }
+
+    private final Lines a;
+    private final Lines b;
+    private final boolean[] deleted;
+    private final boolean[] inserted;
+    /** The furthest x reached on every diagonal, forward and backward.
+     *  Allocated once for the whole file and reused by every bisection. */
+    private final int[] forward;
+    private final int[] backward;
+
+    private LineDiff(Lines a, Lines b) {
+        this.a = a;
+        this.b = b;
+        this.deleted = new boolean[a.count];
+        this.inserted = new boolean[b.count];
+        int maxD = (a.count + b.count + 1) / 2;
+        this.forward = new int[2 * maxD + 2];
+        this.backward = new int[2 * maxD + 2];
+        compare(0, a.count, 0, b.count);
+    }
+
+    private boolean equal(int i, int j) {
+        if (a.hashes[i] != b.hashes[j] || a.length(i) != b.length(j)) {
+            return false;
+        }
+        int ai = a.starts[i];
+        int bj = b.starts[j];
+        for (int k = a.length(i) - 1; k >= 0; k--) {
+            if (a.content.get(ai + k) != b.content.get(bj + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Mark the lines of a[aLo, aHi) and b[bLo, bHi) that are not in
+     *  a longest common subsequence of the two ranges. */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && equal(aLo, bLo)) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && equal(aHi - 1, bHi - 1)) {
+            aHi--;
+            bHi--;
+        }
+        if (aLo == aHi) {
+            Arrays.fill(inserted, bLo, bHi, true);
+        } else if (bLo == bHi) {
+            Arrays.fill(deleted, aLo, aHi, true);
+        } else {
+            bisect(aLo, aHi, bLo, bHi);
+        }
+    }
+
+    /** Find the middle snake of the two ranges and solve both halves around it. */
+    private void bisect(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        Arrays.fill(forward, 0, length, -1);
+        Arrays.fill(backward, 0, length, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        // with an odd delta the paths meet during a forward step, else during a backward one
+        boolean front = delta % 2 != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && equal(aLo + x1, bLo + y1)) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1) {
+                        if (x1 >= n - backward[k2Offset]) {
+                            compare(aLo, aLo + x1, bLo, bLo + y1);
+                            compare(aLo + x1, aHi, bLo + y1, bHi);
+                            return;
+                        }
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])) {
+                    x2 = backward[k2Offset + 1];
+                } else {
+                    x2 = backward[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && equal(aHi - x2 - 1, bHi - y2 - 1)) {
+                    x2++;
+                    y2++;
+                }
+                backward[k2Offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            compare(aLo, aLo + x1, bLo, bLo + y1);
+                            compare(aLo + x1, aHi, bLo + y1, bHi);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        // no commonality at all
+        Arrays.fill(deleted, aLo, aHi, true);
+        Arrays.fill(inserted, bLo, bHi, true);
+    }
+
+    /** Return the changed blocks {aStart, aEnd, bStart, bEnd} in order. */
+    private List<int[]> changeBlocks() {
+        List<int[]> blocks = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.count || j < b.count) {
+            if (i < a.count && j < b.count && !deleted[i] && !inserted[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int aStart = i;
+            int bStart = j;
+            while (i < a.count && deleted[i]) {
+                i++;
+            }
+            while (j < b.count && inserted[j]) {
+                j++;
+            }
+            blocks.add(new int[]{aStart, i, bStart, j});
+        }
+        return blocks;
+    }
+
+    /** Print the diff of one file. A null side is a file that does not exist
+     *  in that version; both sides must not be null. */
+    static void print(PrintStream out, String fileName, ByteBuffer oldContent,
+                      ByteBuffer newContent) {
+        out.println("diff --git a/" + fileName + " b/" + fileName);
+        if (isBinary(oldContent) || isBinary(newContent)) {
+            out.println("Binary files " + (oldContent == null ? "/dev/null" : "a/" + fileName)
+                    + " and " + (newContent == null ? "/dev/null" : "b/" + fileName)
+                    + " differ");
+            return;
+        }
+        out.println("--- " + (oldContent == null ? "/dev/null" : "a/" + fileName));
+        out.println("+++ " + (newContent == null ? "/dev/null" : "b/" + fileName));
+        Lines oldLines = new Lines(oldContent == null ? ByteBuffer.allocate(0) : oldContent);
+        Lines newLines = new Lines(newContent == null ? ByteBuffer.allocate(0) : newContent);
+        new LineDiff(oldLines, newLines).printHunks(out);
+    }
+
+    /** Return the changed blocks {aStart, aEnd, bStart, bEnd} between the
+     *  lines of OLDCONTENT and NEWCONTENT, in order. */
+    static List<int[]> changeBlocks(ByteBuffer oldContent, ByteBuffer newContent) {
+        return new LineDiff(new Lines(oldContent), new Lines(newContent)).changeBlocks();
+    }
+
+    static boolean isBinary(ByteBuffer content) {
+        if (content == null) {
+            return false;
+        }
+        int probe = Math.min(content.limit(), BINARY_PROBE);
+        for (int i = 0; i < probe; i++) {
+            if (content.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Group the change blocks that are at most 2 * CONTEXT lines apart into
+     *  hunks, and print every hunk with its context. */
+    private void printHunks(PrintStream out) {
+        List<int[]> blocks = changeBlocks();
+        byte[] buffer = new byte[256];
+        int first = 0;
+        while (first < blocks.size()) {
+            int last = first;
+            while (last + 1 < blocks.size()
+                    && blocks.get(last + 1)[0] - blocks.get(last)[1] <= 2 * CONTEXT) {
+                last++;
+            }
+            int aStart = Math.max(0, blocks.get(first)[0] - CONTEXT);
+            int bStart = blocks.get(first)[2] - (blocks.get(first)[0] - aStart);
+            int aEnd = Math.min(a.count, blocks.get(last)[1] + CONTEXT);
+            int bEnd = blocks.get(last)[3] + (aEnd - blocks.get(last)[1]);
+            out.println("@@ -" + range(aStart, aEnd - aStart)
+                    + " +" + range(bStart, bEnd - bStart) + " @@");
+            int i = aStart;
+            for (int k = first; k <= last; k++) {
+                int[] block = blocks.get(k);
+                for (; i < block[0]; i++) {
+                    buffer = printLine(out, ' ', a, i, buffer);
+                }
+                for (; i < block[1]; i++) {
+                    buffer = printLine(out, '-', a, i, buffer);
+                }
+                for (int j = block[2]; j < block[3]; j++) {
+                    buffer = printLine(out, '+', b, j, buffer);
+                }
+            }
+            for (; i < aEnd; i++) {
+                buffer = printLine(out, ' ', a, i, buffer);
+            }
+            first = last + 1;
+        }
+    }
+
+    /** The "start,count" of a hunk header; an empty range starts at the line before it. */
+    private static String range(int start, int count) {
+        if (count == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (count == 0 ? start : start + 1) + "," + count;
+    }
+
+    /** Print one line with its prefix, copying it through BUFFER, which is
+     *  grown if needed and returned. */
+    private static byte[] printLine(PrintStream out, char prefix, Lines lines, int line,
+                                    byte[] buffer) {
+        int length = lines.length(line);
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+        }
+        lines.content.get(lines.starts[line], buffer, 0, length);
+        out.print(prefix);
+        out.write(buffer, 0, length);
+        if (!lines.endsWithNewline(line)) {
+            out.println();
+            out.println("\\ No newline at end of file");
+        }
+        return buffer;
+    }
+
+    /** Map a working file into memory instead of reading it onto the heap. */
+    static ByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw Utils.error("File too large to diff: " + file.getName());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw Utils.error("Can't read " + file.getName() + ": " + excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/** The on-disk object store: every new object is written to its own file in
+ *  the directory of its type, in the subdirectory named by the first two
+ *  characters of its ID. The objects moved into packs by gitlet maintenance
+ *  are read from the packs below. A loose copy is preferred, so that
+ *  objects written again after being packed are read from where they were
+ *  last written.
+ *
+ *  @author Li Yanzhuo
+ */
+class LooseObjectDatabase implements ObjectDatabase {
+    /** The packed objects, read when there is no loose copy. */
+    private final ObjectDatabase packs;
+
+    LooseObjectDatabase(ObjectDatabase packs) {
+        this.packs = packs;
+    }
+
+    @Override
+    public boolean contains(ObjectType type, String id) {
+        return type.looseFile(id).isFile() || packs.contains(type, id);
+    }
+
+    @Override
+    public byte[] read(ObjectType type, String id) {
+        File file = type.looseFile(id);
+        if (file.isFile()) {
+            return Utils.readContents(file);
+        }
+        return packs.read(type, id);
+    }
+
+    @Override
+    public void write(ObjectType type, String id, byte[] bytes) {
+        File file = type.looseFile(id);
+        if (file.exists()) {
+            return;
+        }
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, bytes);
+    }
+
+    /** The mtime of the loose file is what the gc grace period is measured from. */
+    @Override
+    public boolean freshen(ObjectType type, String id) {
+        File file = type.looseFile(id);
+        if (file.exists()) {
+            file.setLastModified(System.currentTimeMillis());
+            return true;
+        }
+        return packs.freshen(type, id);
+    }
+
+    @Override
+    public List<String> idsWithPrefix(ObjectType type, String prefix) {
+        TreeSet<String> ids = new TreeSet<>(packs.idsWithPrefix(type, prefix));
+        if (prefix.isEmpty()) {
+            File[] subDirs = type.looseDir().listFiles(File::isDirectory);
+            if (subDirs != null) {
+                for (File subDir : subDirs) {
+                    ids.addAll(Utils.plainFilenamesIn(subDir));
+                }
+            }
+            return new ArrayList<>(ids);
+        }
+        File subDir = Utils.join(type.looseDir(), prefix.substring(0, 2));
+        List<String> loose = Utils.plainFilenamesIn(subDir);
+        if (loose != null) {
+            for (String id : loose) {
+                if (id.startsWith(prefix)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+}
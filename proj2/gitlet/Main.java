@@ -1,17 +1,51 @@
 package gitlet;
 
+import java.util.Arrays;
+
 /** Driver class for Gitlet, a subset of the Git version-control system.
  *  @author Li Yanzhuo
  */
 public class Main {
 
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
+    /** Usage: java gitlet.Main [--trace] ARGS, where ARGS contains
      *  <COMMAND> <OPERAND1> <OPERAND2> ...
+     *  --trace (or the GITLET_TRACE environment variable) prints JSON metrics, see Trace
      *  init -- initialize the gitlet repo
      *  add [filename] -- add file to staging area
      *  commit [message] -- create a new commit
+     *  cherry-pick [commit id] -- apply the changes of a commit on top of HEAD
+     *  rebase [branch name] -- replay the current branch on top of a branch
+     *  log [-- filename] -- show the history of HEAD, or only the commits changing a file
+     *  gc [--prune=now|--prune=SECONDS] -- delete unreachable objects
+     *  fsck -- verify the hashes and references of the object store
+     *  stash [pop|list] -- save uncommitted changes and restore the head commit,
+     *  or apply the newest saved changes again
+     *  watch -- journal the changes to the working directory until stopped,
+     *  so that status only rehashes the changed files
+     *  diff [commit] [commit] [-- filename] -- show changes between commits, the index
+     *  and the working directory
+     *  config [key] [value] -- print or set a repository setting, see Config
+     *  maintenance -- move loose objects into packs and combine small packs
+     *  and the commit-graph layers
+     *  reflog [branch name] -- show where HEAD or a branch pointed to, the newest first;
+     *  reset accepts @{n}, HEAD@{n} and [branch name]@{n} for these entries
+     *  reflog expire [--expire=now|--expire=SECONDS] -- drop the reflog entries older
+     *  than the given age, or than the gc.reflogExpire setting; gc does the same first
+     *  tag [name] | tag -a [name] -m [message] | tag -d [name] -- list the tags,
+     *  create a lightweight or an annotated tag on the head commit, or delete one
+     *  pack-refs -- move the loose refs into the sorted packed-refs file
+     *  blame [commit] [filename] -- show the commit that last changed each line of a file
+     *  worktree add [directory] [branch name] | worktree list -- check out a branch in
+     *  another working directory sharing this repository, or list the worktrees
+     *  sparse-checkout set [pattern]... | list | disable -- only check out the tracked
+     *  files matching the patterns, print them, or check out every file again
      */
     public static void main(String[] args) {
+        // java gitlet.Main --trace <COMMAND> ... reports timing and I/O metrics
+        boolean traceFlag = args.length > 0 && args[0].equals("--trace");
+        if (traceFlag) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         // what if args is empty?
         if (args.length == 0) {
             System.out.println("Please enter a command.");
@@ -19,6 +53,7 @@ public class Main {
         }
 
         String firstArg = args[0];
+        Trace.init(firstArg, traceFlag);
         switch (firstArg) {
             case "init": {
                 Repository.init();
@@ -65,6 +100,15 @@ public class Main {
                 break;
             }
             case "log": {
+                // java gitlet.Main log -- [file name]
+                if (args.length == 3 && args[1].equals("--")) {
+                    Repository.log(args[2]);
+                    break;
+                }
+                if (args.length != 1) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
                 Repository.log();
                 break;
             }
@@ -165,6 +209,26 @@ public class Main {
                 Repository.merge(givenBranchName);
                 break;
             }
+            case "cherry-pick": {
+                if (args.length != 2) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                    break;
+                }
+                String commitID = args[1];
+                Repository.cherryPick(commitID);
+                break;
+            }
+            case "rebase": {
+                if (args.length != 2) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                    break;
+                }
+                String branchName = args[1];
+                Repository.rebase(branchName);
+                break;
+            }
             case "add-remote":{
                 if (args.length != 3) {
                     System.out.println("Incorrect operands.");
@@ -186,6 +250,177 @@ public class Main {
                 Repository.rmRemote(remoteName);
                 break;
             }
+            case "gc": {
+                long graceMillis = GarbageCollector.DEFAULT_GRACE_MILLIS;
+                if (args.length > 2) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                    break;
+                }
+                if (args.length == 2) {
+                    if (!args[1].startsWith("--prune=")) {
+                        System.out.println("Incorrect operands.");
+                        System.exit(0);
+                    }
+                    String expire = args[1].substring("--prune=".length());
+                    if (expire.equals("now")) {
+                        graceMillis = 0;
+                    } else {
+                        try {
+                            graceMillis = Long.parseLong(expire) * 1000;
+                        } catch (NumberFormatException e) {
+                            System.out.println("Incorrect operands.");
+                            System.exit(0);
+                        }
+                    }
+                }
+                Repository.gc(graceMillis);
+                break;
+            }
+            case "fsck": {
+                if (args.length != 1) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.fsck();
+                break;
+            }
+            case "stash": {
+                if (args.length == 1) {
+                    Repository.stash();
+                } else if (args.length == 2 && args[1].equals("pop")) {
+                    Repository.stashPop();
+                } else if (args.length == 2 && args[1].equals("list")) {
+                    Repository.stashList();
+                } else {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
+            }
+            case "watch": {
+                if (args.length != 1) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.watch();
+                break;
+            }
+            case "diff": {
+                // java gitlet.Main diff [commit] [commit] [-- file name]
+                int dashes = Arrays.asList(args).indexOf("--");
+                int revEnd = dashes == -1 ? args.length : dashes;
+                if (revEnd > 3 || (dashes != -1 && dashes != args.length - 2)) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                String fromRev = revEnd > 1 ? args[1] : null;
+                String toRev = revEnd > 2 ? args[2] : null;
+                String fileName = dashes == -1 ? null : args[dashes + 1];
+                Repository.diff(fromRev, toRev, fileName);
+                break;
+            }
+            case "config": {
+                if (args.length != 2 && args.length != 3) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                String key = args[1];
+                String value = args.length == 3 ? args[2] : null;
+                Repository.config(key, value);
+                break;
+            }
+            case "maintenance": {
+                if (args.length != 1) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.maintenance();
+                break;
+            }
+            case "reflog": {
+                if (args.length >= 2 && args[1].equals("expire")) {
+                    long seconds = Config.getLong(Config.REFLOG_EXPIRE);
+                    if (args.length > 3 || (args.length == 3
+                            && !args[2].startsWith("--expire="))) {
+                        System.out.println("Incorrect operands.");
+                        System.exit(0);
+                    }
+                    if (args.length == 3) {
+                        String expire = args[2].substring("--expire=".length());
+                        try {
+                            seconds = expire.equals("now") ? 0 : Long.parseLong(expire);
+                        } catch (NumberFormatException e) {
+                            System.out.println("Incorrect operands.");
+                            System.exit(0);
+                        }
+                    }
+                    Repository.reflogExpire(seconds);
+                    break;
+                }
+                if (args.length > 2) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.reflog(args.length == 2 ? args[1] : null);
+                break;
+            }
+            case "tag": {
+                if (args.length == 1) {
+                    Repository.tagList();
+                } else if (args.length == 2 && !args[1].startsWith("-")) {
+                    Repository.tag(args[1], null);
+                } else if (args.length == 3 && args[1].equals("-d")) {
+                    Repository.deleteTag(args[2]);
+                } else if (args.length == 5 && args[1].equals("-a") && args[3].equals("-m")) {
+                    Repository.tag(args[2], args[4]);
+                } else {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
+            }
+            case "pack-refs": {
+                if (args.length != 1) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.packRefs();
+                break;
+            }
+            case "blame": {
+                if (args.length != 2 && args.length != 3) {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                String rev = args.length == 3 ? args[1] : null;
+                Repository.blame(rev, args[args.length - 1]);
+                break;
+            }
+            case "worktree": {
+                if (args.length == 4 && args[1].equals("add")) {
+                    Repository.worktreeAdd(args[2], args[3]);
+                } else if (args.length == 2 && args[1].equals("list")) {
+                    Repository.worktreeList();
+                } else {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
+            }
+            case "sparse-checkout": {
+                if (args.length >= 3 && args[1].equals("set")) {
+                    Repository.sparseCheckout(Arrays.asList(args).subList(2, args.length));
+                } else if (args.length == 2 && args[1].equals("list")) {
+                    Repository.sparseCheckoutList();
+                } else if (args.length == 2 && args[1].equals("disable")) {
+                    Repository.sparseCheckout(null);
+                } else {
+                    System.out.println("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
+            }
 
             default: {
                 System.out.println("No command with that name exists.");
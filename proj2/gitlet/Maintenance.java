@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+import java.util.*;
+
+/** This class implements the gitlet maintenance command, which moves loose
+ *  objects into packs and keeps the number of packs small.
+ *  Packing every object into one big pack on each run would rewrite the whole
+ *  store every time, and never combining packs would leave one more pack per
+ *  run. Like git repack --geometric=2, the packs are instead kept in a
+ *  geometric progression by object count: sorted from the smallest, every
+ *  pack must hold at least FACTOR times as many objects as the pack before
+ *  it. A run packs the loose objects together with the smallest
+ *  packs that break the progression, and leaves the large packs alone, so
+ *  each object is rewritten O(log n) times over the life of the repository
+ *  and there are O(log n) packs. The multi-pack index is then rewritten, and
+ *  only after that are the loose copies and the old packs deleted.
+ *  The layers of the commit graph are merged into one as well, see
+ *  CommitGraph.compact.
+ *
+ *  @author Li Yanzhuo
+ */
+class Maintenance {
+    static final int FACTOR = 2;
+
+    private Maintenance() {
+    }
+
+    /** Run the repack and return the report printed by gitlet maintenance. */
+    static String run() {
+        List<Pack.Entry> loose = looseObjects();
+        List<Pack> packs = new ArrayList<>(Pack.all());
+        Map<Pack, Integer> counts = new HashMap<>();
+        for (Pack pack : packs) {
+            counts.put(pack, pack.entries().size());
+        }
+        packs.sort(Comparator.comparing(counts::get));
+
+        int split = geometricSplit(packs, counts, loose.size());
+        List<Pack> rolledUp = new ArrayList<>(packs.subList(0, split));
+        List<Pack> kept = new ArrayList<>(packs.subList(split, packs.size()));
+
+        // the new pack: the loose objects and the objects of the rolled-up packs
+        LinkedHashMap<String, Pack.Entry> objects = new LinkedHashMap<>();
+        for (Pack.Entry entry : loose) {
+            objects.putIfAbsent(entry.type.code + entry.id, entry);
+        }
+        for (Pack pack : rolledUp) {
+            for (Pack.Entry entry : pack.entries()) {
+                objects.putIfAbsent(entry.type.code + entry.id, entry);
+            }
+        }
+        Pack newPack = Pack.write(new ArrayList<>(objects.values()));
+        if (newPack != null) {
+            kept.add(newPack);
+        }
+        MultiPackIndex.write(kept);
+        CommitGraph.compact();
+
+        for (Pack pack : rolledUp) {
+            if (!pack.file.equals(newPack == null ? null : newPack.file)) {
+                pack.file.delete();
+            }
+        }
+        for (Pack.Entry entry : loose) {
+            File file = entry.type.looseFile(entry.id);
+            file.delete();
+            if (Utils.isEmptyDirectory(file.getParentFile())) {
+                file.getParentFile().delete();
+            }
+        }
+        return "Packed " + loose.size() + " loose objects and " + rolledUp.size()
+                + " packs into " + (newPack == null ? "no new pack" : newPack.getName())
+                + "; " + kept.size() + " packs, " + MultiPackIndex.get().size() + " objects.";
+    }
+
+    /** Return how many of the smallest packs must be rolled up, together with
+     *  LOOSECOUNT loose objects, to restore the geometric progression. */
+    static int geometricSplit(List<Pack> packs, Map<Pack, Integer> counts, int looseCount) {
+        int n = packs.size();
+        // the largest pack that does not hold FACTOR times the pack before it
+        int split = 0;
+        for (int i = n - 1; i > 0; i--) {
+            if (counts.get(packs.get(i)) < FACTOR * counts.get(packs.get(i - 1))) {
+                split = i + 1;
+                break;
+            }
+        }
+        // the rolled-up pack comes before the packs that are left, and it is
+        // larger than any pack it replaces, so the next ones may now break
+        // the progression against it
+        long rolledUp = looseCount;
+        for (int i = 0; i < split; i++) {
+            rolledUp += counts.get(packs.get(i));
+        }
+        while (split < n && counts.get(packs.get(split)) < FACTOR * rolledUp) {
+            rolledUp += counts.get(packs.get(split));
+            split++;
+        }
+        return split;
+    }
+
+    /** Return every loose object, in type and ID order. */
+    private static List<Pack.Entry> looseObjects() {
+        List<Pack.Entry> loose = new ArrayList<>();
+        for (ObjectType type : ObjectType.values()) {
+            File[] subDirs = type.looseDir().listFiles(File::isDirectory);
+            if (subDirs == null) {
+                continue;
+            }
+            Arrays.sort(subDirs);
+            for (File subDir : subDirs) {
+                for (String id : Utils.plainFilenamesIn(subDir)) {
+                    loose.add(new Pack.Entry(type, id, 0, 0));
+                }
+            }
+        }
+        return loose;
+    }
+}
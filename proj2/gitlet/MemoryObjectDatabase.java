@@ -0,0 +1,59 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/** An object store kept in memory, for test suites and benchmarks that
+ *  should not touch the disk. The maps are sorted, so prefix lookups are a
+ *  range scan. Nothing is persisted: the objects are lost when the process
+ *  exits, so it can only back a repository used within one JVM.
+ *  It is a test hook, installed from code with ObjectType.useDatabase; no
+ *  config key selects it, since each gitlet command is a process of its own.
+ *  It only holds the objects: refs, the index, HEAD, reflogs and the commit
+ *  graph are still files in the .gitlet directory.
+ *
+ *  @author Li Yanzhuo
+ */
+class MemoryObjectDatabase implements ObjectDatabase {
+    private final Map<ObjectType, ConcurrentSkipListMap<String, byte[]>> objects =
+            new EnumMap<>(ObjectType.class);
+
+    MemoryObjectDatabase() {
+        for (ObjectType type : ObjectType.values()) {
+            objects.put(type, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    @Override
+    public boolean contains(ObjectType type, String id) {
+        return objects.get(type).containsKey(id);
+    }
+
+    @Override
+    public byte[] read(ObjectType type, String id) {
+        return objects.get(type).get(id);
+    }
+
+    @Override
+    public void write(ObjectType type, String id, byte[] bytes) {
+        objects.get(type).putIfAbsent(id, bytes);
+    }
+
+    @Override
+    public boolean freshen(ObjectType type, String id) {
+        return contains(type, id);
+    }
+
+    @Override
+    public List<String> idsWithPrefix(ObjectType type, String prefix) {
+        ConcurrentSkipListMap<String, byte[]> map = objects.get(type);
+        if (prefix.isEmpty()) {
+            return new ArrayList<>(map.keySet());
+        }
+        // every ID starting with PREFIX sorts before PREFIX followed by 'g'
+        return new ArrayList<>(map.subMap(prefix, prefix + "g").keySet());
+    }
+}
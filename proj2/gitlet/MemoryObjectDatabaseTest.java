@@ -0,0 +1,76 @@
+package gitlet;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Tests of MemoryObjectDatabase, alone and as the object store of a
+ *  repository. */
+public class MemoryObjectDatabaseTest {
+
+    @Test
+    public void storesObjectsByTypeAndID() {
+        MemoryObjectDatabase db = new MemoryObjectDatabase();
+        assertFalse(db.contains(ObjectType.BLOB, "ab01"));
+        assertNull(db.read(ObjectType.BLOB, "ab01"));
+        assertFalse(db.freshen(ObjectType.BLOB, "ab01"));
+
+        db.write(ObjectType.BLOB, "ab01", new byte[] {1});
+        assertTrue(db.contains(ObjectType.BLOB, "ab01"));
+        assertTrue(db.freshen(ObjectType.BLOB, "ab01"));
+        assertArrayEquals(new byte[] {1}, db.read(ObjectType.BLOB, "ab01"));
+        // the same ID under another type is another object
+        assertFalse(db.contains(ObjectType.CHUNK, "ab01"));
+
+        // objects never change once written
+        db.write(ObjectType.BLOB, "ab01", new byte[] {2});
+        assertArrayEquals(new byte[] {1}, db.read(ObjectType.BLOB, "ab01"));
+    }
+
+    @Test
+    public void listsIDsWithPrefixInOrder() {
+        MemoryObjectDatabase db = new MemoryObjectDatabase();
+        for (String id : List.of("ac00", "ab02", "aa99", "ab01", "abff", "b000")) {
+            db.write(ObjectType.COMMIT, id, new byte[0]);
+        }
+        db.write(ObjectType.TREE, "ab03", new byte[0]);
+        assertEquals(List.of("ab01", "ab02", "abff"), db.idsWithPrefix(ObjectType.COMMIT, "ab"));
+        assertEquals(List.of("ab02"), db.idsWithPrefix(ObjectType.COMMIT, "ab02"));
+        assertEquals(List.of(), db.idsWithPrefix(ObjectType.COMMIT, "cd"));
+        assertEquals(List.of("aa99", "ab01", "ab02", "abff", "ac00", "b000"),
+                db.idsWithPrefix(ObjectType.COMMIT, ""));
+    }
+
+    @Test
+    public void backsARepositoryWithoutObjectFiles() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-memory").toFile();
+        try {
+            Repository.useWorktree(new Worktree(dir));
+            ObjectType.useDatabase(new MemoryObjectDatabase());
+            Repository.init();
+            Utils.writeContents(Utils.join(dir, "wug.txt"), "This is a wug.");
+            Repository.add("wug.txt");
+            Repository.commit("added wug");
+
+            assertEquals(2, ObjectType.COMMIT.allIDs().size());
+            assertEquals(1, ObjectType.BLOB.allIDs().size());
+            String head = Refs.read(Refs.HEADS + "master");
+            assertTrue(ObjectType.COMMIT.contains(head));
+            assertEquals("added wug", Commit.load(head).getMessage());
+            for (ObjectType type : ObjectType.values()) {
+                File looseDir = type.looseDir();
+                assertTrue(!looseDir.exists() || Utils.isEmptyDirectory(looseDir));
+            }
+        } finally {
+            Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.util.*;
+
+/** Finds the merge bases (best common ancestors) of two commits.
+ *  A best common ancestor is a common ancestor that is not an ancestor of
+ *  any other common ancestor. With criss-cross merges there can be several.
+ *
+ *  The search works on the commit graph, so commits are never loaded.
+ *  Starting from both commits, it always expands the commit with the
+ *  largest generation number and paints its parents with the side(s) it
+ *  was reached from. A commit painted from both sides is a candidate, and
+ *  everything below it is marked stale, because an ancestor of a candidate
+ *  can not be a best one. Since a commit is only expanded after every commit
+ *  with a larger generation, its paint is final when it is expanded, and the
+ *  search stops as soon as only stale commits are left in the queue.
+ *  As a safety net for graphs with inconsistent generations, the candidates
+ *  are finally checked against each other with a walk that never goes below
+ *  the smallest candidate generation.
+ *
+ *  @author Li Yanzhuo
+ */
+class MergeBase {
+    private static final int PARENT1 = 1;
+    private static final int PARENT2 = 2;
+    private static final int STALE = 4;
+
+    private final CommitGraph graph;
+    private final HashMap<String, Integer> flags = new HashMap<>();
+
+    MergeBase(CommitGraph graph) {
+        this.graph = graph;
+    }
+
+    /** Return every best common ancestor of A and B, the most recent first
+     *  (larger generation, then later timestamp). Both commits must be in the graph. */
+    List<String> find(String a, String b) {
+        if (a.equals(b)) {
+            return new ArrayList<>(List.of(a));
+        }
+        List<String> candidates = paintDownToCommon(a, b);
+        List<String> bases = removeRedundant(candidates);
+        bases.sort(this::compareRecency);
+        return bases;
+    }
+
+    /** Return the commits reachable from HEAD but not from UPSTREAM, as in
+     *  git rev-list UPSTREAM..HEAD, parents before children. Both commits
+     *  must be in the graph.
+     *  The walk expands the commit with the largest generation first, and a
+     *  commit reached from UPSTREAM marks its parents uninteresting. As every
+     *  child of a commit has a larger generation, the mark of a commit is
+     *  final when it is expanded, and the walk stops once only uninteresting
+     *  commits are left in the queue. */
+    List<String> range(String upstream, String head) {
+        HashMap<String, Boolean> uninteresting = new HashMap<>();
+        PriorityQueue<String> queue = new PriorityQueue<>(this::compareRecency);
+        uninteresting.put(upstream, true);
+        queue.add(upstream);
+        int interesting = 0;
+        if (!head.equals(upstream)) {
+            uninteresting.put(head, false);
+            queue.add(head);
+            interesting++;
+        }
+        List<String> result = new ArrayList<>();
+        while (interesting > 0) {
+            String commitID = queue.poll();
+            boolean mark = uninteresting.get(commitID);
+            if (!mark) {
+                interesting--;
+                result.add(commitID);
+            }
+            for (String parentID : graph.get(commitID).parents()) {
+                Boolean parentMark = uninteresting.get(parentID);
+                if (parentMark == null) {
+                    uninteresting.put(parentID, mark);
+                    queue.add(parentID);
+                    if (!mark) {
+                        interesting++;
+                    }
+                } else if (mark && !parentMark) {
+                    uninteresting.put(parentID, true);
+                    interesting--;
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Most recent first; ties broken by ID so the order is deterministic. */
+    private int compareRecency(String x, String y) {
+        CommitGraph.Entry ex = graph.get(x);
+        CommitGraph.Entry ey = graph.get(y);
+        if (ex.generation != ey.generation) {
+            return Integer.compare(ey.generation, ex.generation);
+        }
+        if (ex.timestamp != ey.timestamp) {
+            return Long.compare(ey.timestamp, ex.timestamp);
+        }
+        return x.compareTo(y);
+    }
+
+    private List<String> paintDownToCommon(String a, String b) {
+        PriorityQueue<String> queue = new PriorityQueue<>(this::compareRecency);
+        Set<String> queued = new HashSet<>();
+        flags.put(a, PARENT1);
+        flags.put(b, PARENT2);
+        queue.add(a);
+        queue.add(b);
+        queued.add(a);
+        queued.add(b);
+        int nonStale = 2;
+
+        List<String> result = new ArrayList<>();
+        while (nonStale > 0) {
+            String commitID = queue.poll();
+            queued.remove(commitID);
+            int paint = flags.get(commitID) & (PARENT1 | PARENT2 | STALE);
+            if ((paint & STALE) == 0) {
+                nonStale--;
+            }
+            if (paint == (PARENT1 | PARENT2)) {
+                result.add(commitID);
+                paint |= STALE;
+            }
+            for (String parentID : graph.get(commitID).parents()) {
+                int parentFlags = flags.getOrDefault(parentID, 0);
+                if ((parentFlags & paint) == paint) {
+                    continue;
+                }
+                int newFlags = parentFlags | paint;
+                flags.put(parentID, newFlags);
+                if (queued.add(parentID)) {
+                    queue.add(parentID);
+                    if ((newFlags & STALE) == 0) {
+                        nonStale++;
+                    }
+                } else if ((parentFlags & STALE) == 0 && (newFlags & STALE) != 0) {
+                    nonStale--;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Drop every candidate that is an ancestor of another candidate. */
+    private List<String> removeRedundant(List<String> candidates) {
+        if (candidates.size() < 2) {
+            return new ArrayList<>(candidates);
+        }
+        int minGeneration = Integer.MAX_VALUE;
+        for (String candidate : candidates) {
+            minGeneration = Math.min(minGeneration, graph.get(candidate).generation);
+        }
+        Set<String> redundant = new HashSet<>();
+        for (String candidate : candidates) {
+            if (redundant.contains(candidate)) {
+                continue;
+            }
+            Set<String> ancestors = ancestorsDownTo(candidate, minGeneration);
+            for (String other : candidates) {
+                if (!other.equals(candidate) && ancestors.contains(other)) {
+                    redundant.add(other);
+                }
+            }
+        }
+        List<String> bases = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (!redundant.contains(candidate)) {
+                bases.add(candidate);
+            }
+        }
+        return bases;
+    }
+
+    /** Return the proper ancestors of START whose generation is at least MINGENERATION. */
+    private Set<String> ancestorsDownTo(String start, int minGeneration) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>(graph.get(start).parents());
+        while (!stack.isEmpty()) {
+            String commitID = stack.pop();
+            if (graph.get(commitID).generation < minGeneration || !visited.add(commitID)) {
+                continue;
+            }
+            stack.addAll(graph.get(commitID).parents());
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/** One index over the objects of every pack, so that looking up an object
+ *  costs one binary search however many packs there are, instead of one
+ *  probe per pack.
+ *
+ *  Format: the magic "GMIX", the version, the number of packs and of objects,
+ *  the pack names, a fanout table of 256 ints (entry i is the number of
+ *  objects whose ID starts with a byte of at most i), then one fixed-size
+ *  record per object: ID (20 bytes), type code (1 byte), pack number (int),
+ *  offset (long) and length (int), sorted by ID and then type. An object
+ *  in several packs is only listed once.
+ *  The file is memory-mapped, so opening it does not read the records.
+ *  If packs exist but the index is missing, it is rebuilt from the packs.
+ *
+ *  @author Li Yanzhuo
+ */
+class MultiPackIndex {
+    private static final int MAGIC = 0x474D4958; // "GMIX"
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 20 + 1 + 4 + 8 + 4;
+
+    private final List<Pack> packs;
+    private final int count;
+    private final int[] fanout;
+    /** The records, or null for an empty index. */
+    private final ByteBuffer records;
+
+    private MultiPackIndex(List<Pack> packs, int count, int[] fanout, ByteBuffer records) {
+        this.packs = packs;
+        this.count = count;
+        this.fanout = fanout;
+        this.records = records;
+    }
+
+    static File midxFile() {
+        return Utils.join(Pack.packDir(), "multi-pack-index");
+    }
+
+    /** Return the index of the repository, reading it on first use. */
+    static synchronized MultiPackIndex get() {
+        Store store = Repository.store();
+        if (store.multiPackIndex == null) {
+            if (!midxFile().isFile() && !Pack.all().isEmpty()) {
+                write(Pack.all());
+            }
+            store.multiPackIndex = midxFile().isFile() ? open() : new MultiPackIndex(
+                    new ArrayList<>(), 0, new int[256], null);
+        }
+        return store.multiPackIndex;
+    }
+
+    private static MultiPackIndex open() {
+        long start = Trace.start();
+        try (FileChannel channel = FileChannel.open(midxFile().toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw Utils.error("Not a multi-pack index: " + midxFile());
+            }
+            int packCount = buffer.getInt();
+            int count = buffer.getInt();
+            List<Pack> packs = new ArrayList<>(packCount);
+            for (int i = 0; i < packCount; i++) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                packs.add(new Pack(Utils.join(Pack.packDir(), new String(name))));
+            }
+            int[] fanout = new int[256];
+            for (int i = 0; i < 256; i++) {
+                fanout[i] = buffer.getInt();
+            }
+            ByteBuffer records = buffer.slice();
+            Trace.end("load-midx", start);
+            return new MultiPackIndex(packs, count, fanout, records);
+        } catch (IOException excp) {
+            throw Utils.error("Can't read the multi-pack index: " + excp.getMessage());
+        }
+    }
+
+    /** Index the objects of PACKS and make it the index of the repository. */
+    static void write(List<Pack> packs) {
+        List<Pack.Entry> entries = new ArrayList<>();
+        List<Integer> packNumbers = new ArrayList<>();
+        for (int p = 0; p < packs.size(); p++) {
+            for (Pack.Entry entry : packs.get(p).entries()) {
+                entries.add(entry);
+                packNumbers.add(p);
+            }
+        }
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> {
+            int byID = entries.get(x).id.compareTo(entries.get(y).id);
+            return byID != 0 ? byID : Byte.compare(entries.get(x).type.code,
+                    entries.get(y).type.code);
+        });
+        List<Integer> unique = new ArrayList<>();
+        for (int i : order) {
+            if (!unique.isEmpty()) {
+                Pack.Entry last = entries.get(unique.get(unique.size() - 1));
+                if (last.id.equals(entries.get(i).id) && last.type == entries.get(i).type) {
+                    continue;
+                }
+            }
+            unique.add(i);
+        }
+
+        int[] fanout = new int[256];
+        for (int i : unique) {
+            fanout[Integer.parseInt(entries.get(i).id.substring(0, 2), 16)]++;
+        }
+        for (int i = 1; i < 256; i++) {
+            fanout[i] += fanout[i - 1];
+        }
+        Pack.packDir().mkdirs();
+        File tmpFile = Utils.join(Pack.packDir(), "tmp-multi-pack-index");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(packs.size());
+            out.writeInt(unique.size());
+            for (Pack pack : packs) {
+                byte[] name = pack.getName().getBytes();
+                out.writeShort(name.length);
+                out.write(name);
+            }
+            for (int f : fanout) {
+                out.writeInt(f);
+            }
+            for (int i : unique) {
+                Pack.Entry entry = entries.get(i);
+                out.write(Pack.fromHex(entry.id));
+                out.writeByte(entry.type.code);
+                out.writeInt(packNumbers.get(i));
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+            }
+        } catch (IOException excp) {
+            tmpFile.delete();
+            throw Utils.error("Can't write the multi-pack index: " + excp.getMessage());
+        }
+        try {
+            Files.move(tmpFile.toPath(), midxFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Can't write the multi-pack index: " + excp.getMessage());
+        }
+        Repository.store().multiPackIndex = null;
+    }
+
+    int size() {
+        return count;
+    }
+
+    List<Pack> getPacks() {
+        return packs;
+    }
+
+    /** Compare record I with the key: negative if the record comes first. */
+    private int compareRecord(int i, byte[] id, byte type) {
+        int base = i * RECORD_SIZE;
+        for (int k = 0; k < 20; k++) {
+            int c = Integer.compare(records.get(base + k) & 0xFF, id[k] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Byte.compare(records.get(base + 20), type);
+    }
+
+    /** Return the record number of the object, or -1. */
+    private int find(ObjectType type, String id) {
+        if (records == null || id.length() != 40) {
+            return -1;
+        }
+        byte[] key = Pack.fromHex(id);
+        int first = key[0] & 0xFF;
+        int lo = first == 0 ? 0 : fanout[first - 1];
+        int hi = fanout[first] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareRecord(mid, key, type.code);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    boolean contains(ObjectType type, String id) {
+        return find(type, id) >= 0;
+    }
+
+    /** Return the bytes of the packed object, or null if it is not packed. */
+    byte[] read(ObjectType type, String id) {
+        int i = find(type, id);
+        if (i < 0) {
+            return null;
+        }
+        int base = i * RECORD_SIZE;
+        Pack pack = packs.get(records.getInt(base + 21));
+        return pack.read(records.getLong(base + 25), records.getInt(base + 33));
+    }
+
+    private String recordID(int i) {
+        byte[] id = new byte[20];
+        records.get(i * RECORD_SIZE, id);
+        return Pack.toHex(id);
+    }
+
+    /** Return the IDs of the packed objects of TYPE starting with PREFIX.
+     *  With a prefix of two or more characters, only the records of one
+     *  fanout slot are scanned. */
+    List<String> idsWithPrefix(ObjectType type, String prefix) {
+        List<String> ids = new ArrayList<>();
+        if (records == null) {
+            return ids;
+        }
+        int lo = 0;
+        int hi = count;
+        if (prefix.length() >= 2) {
+            int high = Character.digit(prefix.charAt(0), 16);
+            int low = Character.digit(prefix.charAt(1), 16);
+            if (high < 0 || low < 0) {
+                // not hexadecimal, so no ID starts with it
+                return ids;
+            }
+            int first = high * 16 + low;
+            lo = first == 0 ? 0 : fanout[first - 1];
+            hi = fanout[first];
+        }
+        for (int i = lo; i < hi; i++) {
+            if (records.get(i * RECORD_SIZE + 20) == type.code) {
+                String id = recordID(i);
+                if (id.startsWith(prefix)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+}
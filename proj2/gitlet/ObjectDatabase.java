@@ -0,0 +1,38 @@
+package gitlet;
+
+import java.util.List;
+
+/** Where the objects of a repository (commits, trees, blobs and chunks) are
+ *  stored. Objects are stored as bytes under their type and ID, and are
+ *  never modified once written, so a backend only has to add, find and
+ *  list them. Every read and write of an object goes through ObjectType,
+ *  which forwards it to the database of the run, see ObjectType.database.
+ *  Backends:
+ *  1.LooseObjectDatabase: one file per object, as gitlet always did, with
+ *  the packs below it for the objects moved there by gitlet maintenance.
+ *  2.PackObjectDatabase: the packs alone, through the multi-pack index.
+ *  3.MemoryObjectDatabase: maps in memory, for tests and benchmarks that
+ *  should not touch the disk. Objects only live as long as the process.
+ *
+ *  @author Li Yanzhuo
+ */
+interface ObjectDatabase {
+
+    /** Whether the object is stored. */
+    boolean contains(ObjectType type, String id);
+
+    /** Return the stored bytes of the object, or null if it is not stored. */
+    byte[] read(ObjectType type, String id);
+
+    /** Store the object, unless it is already stored. */
+    void write(ObjectType type, String id, byte[] bytes);
+
+    /** Whether the object is stored; if it is, mark it as recently written
+     *  where the backend keeps times, so that gc gives it a new grace period. */
+    boolean freshen(ObjectType type, String id);
+
+    /** Return the IDs of the stored objects of TYPE starting with PREFIX,
+     *  in order and without duplicates. PREFIX has at least two characters,
+     *  or is empty to list every object of TYPE. */
+    List<String> idsWithPrefix(ObjectType type, String prefix);
+}
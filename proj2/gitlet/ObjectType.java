@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.List;
+
+/** The kinds of objects in the store, and the entry point to the object
+ *  database of the run (see ObjectDatabase) for reading and writing them.
+ *  On disk, a loose object is one file in the directory of its type (in the
+ *  subdirectory named by the first two characters of its ID), and a packed
+ *  one is found through the multi-pack index (see MultiPackIndex).
+ *  Lookups always go through the type as well as the ID: a small blob and
+ *  its only chunk, for example, are the same bytes and have the same ID.
+ *
+ *  @author Li Yanzhuo
+ */
+enum ObjectType {
+    COMMIT(1, "commits"),
+    TREE(2, "trees"),
+    BLOB(3, "blobs"),
+    CHUNK(4, "chunks"),
+    TAG(5, "tags");
+
+    /** The byte written for this type in packs and in the multi-pack index. */
+    final byte code;
+    /** The name of the directory of the loose objects in the shared .gitlet. */
+    private final String dirName;
+
+    ObjectType(int code, String dirName) {
+        this.code = (byte) code;
+        this.dirName = dirName;
+    }
+
+    static ObjectType fromCode(byte code) {
+        for (ObjectType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("unknown object type " + code);
+    }
+
+    File looseDir() {
+        return Repository.commonPath(dirName);
+    }
+
+    File looseFile(String id) {
+        return Utils.join(looseDir(), id.substring(0, 2), id);
+    }
+
+    /** Return the object database of the repository, the on-disk store by default. */
+    static synchronized ObjectDatabase database() {
+        Store store = Repository.store();
+        if (store.database == null) {
+            store.database = new LooseObjectDatabase(new PackObjectDatabase());
+        }
+        return store.database;
+    }
+
+    /** Make DB the object database of the repository, or the on-disk store
+     *  again if DB is null. Must be called before the first object is read
+     *  or written, e.g. by a benchmark before init. This is a hook for tests
+     *  and benchmarks only: it replaces where the objects go, and everything
+     *  else in the .gitlet directory stays on disk. */
+    static synchronized void useDatabase(ObjectDatabase db) {
+        Repository.store().database = db;
+    }
+
+    /** Whether the object is stored. */
+    boolean contains(String id) {
+        return database().contains(this, id);
+    }
+
+    /** Return the stored bytes of the object, or null if it is not stored. */
+    byte[] read(String id) {
+        return database().read(this, id);
+    }
+
+    /** Return the object deserialized from its stored bytes, or null if it is not stored. */
+    <T extends Serializable> T readObject(String id, Class<T> expectedClass) {
+        byte[] bytes = read(id);
+        return bytes == null ? null : Utils.readObject(bytes, expectedClass);
+    }
+
+    /** Store the object, unless it is already stored. */
+    void write(String id, byte[] bytes) {
+        database().write(this, id, bytes);
+    }
+
+    void writeObject(String id, Serializable obj) {
+        Trace.objectSaved();
+        write(id, Utils.serialize(obj));
+    }
+
+    /** Whether the object is stored, restarting its gc grace period if it is. */
+    boolean freshen(String id) {
+        return database().freshen(this, id);
+    }
+
+    /** Return the IDs of the stored objects of this type starting with PREFIX,
+     *  in order and without duplicates. PREFIX has at least two characters,
+     *  or is empty to list every object of this type, as allIDs does. */
+    List<String> idsWithPrefix(String prefix) {
+        return database().idsWithPrefix(this, prefix);
+    }
+
+    /** Return the IDs of every stored object of this type, in order. */
+    List<String> allIDs() {
+        return database().idsWithPrefix(this, "");
+    }
+}
@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A pack: many objects of any type stored in a single file, so that a
+ *  repository with many objects does not need one file per object.
+ *  The stored bytes of every object are the same as in its loose file.
+ *
+ *  Format: the magic "GPCK", the version and the number of objects, then for
+ *  every object its type code (1 byte), its ID (20 bytes), the length of its
+ *  bytes (int) and the bytes. A pack is named after the SHA-1 of the keys of
+ *  its objects, and is never modified once written: repacking writes new
+ *  packs and deletes the old ones.
+ *
+ *  @author Li Yanzhuo
+ */
+class Pack {
+    private static final int MAGIC = 0x4750434B; // "GPCK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_HEADER_SIZE = 1 + 20 + 4;
+
+    /** An object in a pack: its key, and where its bytes start. */
+    static class Entry {
+        final ObjectType type;
+        final String id;
+        final long offset;
+        final int length;
+
+        Entry(ObjectType type, String id, long offset, int length) {
+            this.type = type;
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    final File file;
+
+    Pack(File file) {
+        this.file = file;
+    }
+
+    String getName() {
+        return file.getName();
+    }
+
+    static File packDir() {
+        return Repository.commonPath("packs");
+    }
+
+    /** Return every pack in the packs directory, in name order. */
+    static List<Pack> all() {
+        List<Pack> packs = new ArrayList<>();
+        List<String> names = Utils.plainFilenamesIn(packDir());
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith("pack-") && name.endsWith(".pack")) {
+                    packs.add(new Pack(Utils.join(packDir(), name)));
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Read the entry headers of the pack, skipping the object bytes. */
+    List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw Utils.error("Not a pack: " + file.getName());
+            }
+            int count = in.readInt();
+            long offset = HEADER_SIZE;
+            byte[] idBytes = new byte[20];
+            for (int i = 0; i < count; i++) {
+                ObjectType type = ObjectType.fromCode(in.readByte());
+                in.readFully(idBytes);
+                int length = in.readInt();
+                offset += ENTRY_HEADER_SIZE;
+                entries.add(new Entry(type, toHex(idBytes), offset, length));
+                in.skipNBytes(length);
+                offset += length;
+            }
+        } catch (EOFException excp) {
+            throw Utils.error("Truncated pack: " + file.getName());
+        } catch (IOException excp) {
+            throw Utils.error("Can't read pack " + file.getName() + ": " + excp.getMessage());
+        }
+        return entries;
+    }
+
+    /** Read the bytes of one object of the pack. */
+    byte[] read(long offset, int length) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[length];
+            in.seek(offset);
+            in.readFully(bytes);
+            Trace.bytesRead(length);
+            return bytes;
+        } catch (IOException excp) {
+            throw Utils.error("Can't read pack " + file.getName() + ": " + excp.getMessage());
+        }
+    }
+
+    /** Write a new pack holding the given objects, in the given order, reading
+     *  each of them from wherever it is stored now, one at a time.
+     *  Returns null if there is nothing to write. */
+    static Pack write(List<Entry> objects) {
+        if (objects.isEmpty()) {
+            return null;
+        }
+        packDir().mkdirs();
+        StringBuilder keys = new StringBuilder();
+        for (Entry object : objects) {
+            keys.append(object.type.code).append(':').append(object.id).append(';');
+        }
+        File packFile = Utils.join(packDir(), "pack-" + Utils.sha1(keys.toString()) + ".pack");
+        if (packFile.exists()) {
+            return new Pack(packFile);
+        }
+        File tmpFile = Utils.join(packDir(), "tmp-" + packFile.getName());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(objects.size());
+            for (Entry object : objects) {
+                byte[] bytes = object.type.read(object.id);
+                if (bytes == null) {
+                    throw Utils.error("Can't find " + object.type + " " + object.id);
+                }
+                out.writeByte(object.type.code);
+                out.write(fromHex(object.id));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                Trace.bytesWritten(bytes.length);
+            }
+        } catch (IOException excp) {
+            tmpFile.delete();
+            throw Utils.error("Can't write pack: " + excp.getMessage());
+        }
+        if (!tmpFile.renameTo(packFile)) {
+            tmpFile.delete();
+            throw Utils.error("Can't write pack " + packFile.getName());
+        }
+        return new Pack(packFile);
+    }
+
+    static byte[] fromHex(String id) {
+        byte[] bytes = new byte[id.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
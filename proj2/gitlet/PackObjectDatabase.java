@@ -0,0 +1,39 @@
+package gitlet;
+
+import java.util.List;
+
+/** The objects in the packs, found through the multi-pack index.
+ *  Packs are immutable and only written by gitlet maintenance (and rewritten
+ *  by gc), so this backend is read-only: it is the layer below the loose
+ *  objects, or a view of a fully packed repository.
+ *
+ *  @author Li Yanzhuo
+ */
+class PackObjectDatabase implements ObjectDatabase {
+
+    @Override
+    public boolean contains(ObjectType type, String id) {
+        return MultiPackIndex.get().contains(type, id);
+    }
+
+    @Override
+    public byte[] read(ObjectType type, String id) {
+        return MultiPackIndex.get().read(type, id);
+    }
+
+    @Override
+    public void write(ObjectType type, String id, byte[] bytes) {
+        throw Utils.error("Packs are only written by gitlet maintenance.");
+    }
+
+    /** A pack has no time per object: gc spares packs written recently. */
+    @Override
+    public boolean freshen(ObjectType type, String id) {
+        return contains(type, id);
+    }
+
+    @Override
+    public List<String> idsWithPrefix(ObjectType type, String prefix) {
+        return MultiPackIndex.get().idsWithPrefix(type, prefix);
+    }
+}
@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The reflog: for HEAD and every branch, the history of the commits it
+ *  pointed to, so that a commit left behind by reset or rebase can be found
+ *  again without scanning every commit.
+ *  Each ref has its own append-only log under .gitlet/logs, at the same path
+ *  as the ref (logs/HEAD, logs/refs/heads/[branch]). The log of HEAD is in
+ *  the .gitlet of its worktree, and the branch logs in the shared one. A log is a sequence of
+ *  fixed-size binary records: the old commit ID (20 bytes, all zero for a new
+ *  ref), the new commit ID (20 bytes), the time in epoch seconds (long) and
+ *  the action code (1 byte). The message shown by reflog is rebuilt from the
+ *  action and the commits, so records never need a variable-length field.
+ *  Appending is one small write, and entry n (the n-th newest) is read by
+ *  seeking to n + 1 records before the end of the file.
+ *  Entries expire: reflog expire, and gc before it marks, drop the entries
+ *  older than gc.reflogExpire seconds (90 days by default). Records are
+ *  appended in time order, so the expired ones are the start of a log and
+ *  the log is cut down to the newer records.
+ *
+ *  @author Li Yanzhuo
+ */
+class RefLog {
+    static final String HEAD = "HEAD";
+    static final int RECORD_SIZE = 20 + 20 + 8 + 1;
+    private static final byte[] NO_COMMIT = new byte[20];
+
+    /** Why a ref moved. */
+    enum Action {
+        INIT("commit (initial)"),
+        COMMIT("commit"),
+        MERGE("commit (merge)"),
+        CHERRY_PICK("cherry-pick"),
+        REBASE("rebase"),
+        RESET("reset"),
+        CHECKOUT("checkout"),
+        BRANCH("branch");
+
+        final String label;
+
+        Action(String label) {
+            this.label = label;
+        }
+    }
+
+    /** One record of a log. */
+    static class Entry {
+        final String oldID;
+        final String newID;
+        final long timestamp;
+        final Action action;
+
+        Entry(String oldID, String newID, long timestamp, Action action) {
+            this.oldID = oldID;
+            this.newID = newID;
+            this.timestamp = timestamp;
+            this.action = action;
+        }
+
+        /** The message shown by reflog, as in Git. */
+        String describe() {
+            switch (action) {
+                case RESET:
+                    return action.label + ": moving to " + newID;
+                case CHECKOUT:
+                    return action.label + ": moving from " + oldID.substring(0, 7)
+                            + " to " + newID.substring(0, 7);
+                case BRANCH:
+                    return action.label + ": Created from HEAD";
+                default:
+                    return action.label + ": " + Commit.load(newID).getMessage();
+            }
+        }
+    }
+
+    private RefLog() {
+    }
+
+    /** Return the log file of REF, a path relative to .gitlet such as HEAD or refs/heads/master. */
+    static File logFile(String ref) {
+        if (ref.equals(HEAD)) {
+            return Repository.worktreePath("logs", HEAD);
+        }
+        return Repository.commonPath("logs", ref);
+    }
+
+    static String branchRef(String branchName) {
+        return "refs/heads/" + branchName;
+    }
+
+    /** Append one record to the log of REF. OLDID is null for a new ref. */
+    static void append(String ref, String oldID, String newID, Action action) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(oldID == null ? NO_COMMIT : Pack.fromHex(oldID));
+        record.put(Pack.fromHex(newID));
+        record.putLong(System.currentTimeMillis() / 1000);
+        record.put((byte) action.ordinal());
+        File file = logFile(ref);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(record.array());
+        } catch (IOException excp) {
+            throw Utils.error("Can't write the reflog of " + ref + ": " + excp.getMessage());
+        }
+    }
+
+    /** Return the number of entries in the log of REF. */
+    static int size(String ref) {
+        return (int) (logFile(ref).length() / RECORD_SIZE);
+    }
+
+    /** Return the Nth newest entry of the log of REF, or null if there are
+     *  not that many. Only that record is read. */
+    static Entry get(String ref, int n) {
+        File file = logFile(ref);
+        long offset = file.length() - (long) (n + 1) * RECORD_SIZE;
+        if (n < 0 || offset < 0) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] record = new byte[RECORD_SIZE];
+            in.seek(offset);
+            in.readFully(record);
+            return parse(ByteBuffer.wrap(record));
+        } catch (IOException excp) {
+            throw Utils.error("Can't read the reflog of " + ref + ": " + excp.getMessage());
+        }
+    }
+
+    /** Return every entry of the log of REF, the newest first. */
+    static List<Entry> entries(String ref) {
+        return entries(logFile(ref));
+    }
+
+    private static List<Entry> entries(File file) {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.isFile()) {
+            return entries;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Utils.readContents(file));
+        for (int i = buffer.capacity() / RECORD_SIZE - 1; i >= 0; i--) {
+            buffer.position(i * RECORD_SIZE);
+            entries.add(parse(buffer));
+        }
+        return entries;
+    }
+
+    private static Entry parse(ByteBuffer record) {
+        byte[] id = new byte[20];
+        record.get(id);
+        String oldID = Pack.toHex(id);
+        if (oldID.equals(Pack.toHex(NO_COMMIT))) {
+            oldID = null;
+        }
+        record.get(id);
+        String newID = Pack.toHex(id);
+        long timestamp = record.getLong();
+        return new Entry(oldID, newID, timestamp, Action.values()[record.get()]);
+    }
+
+    /** Return the commit of every entry of every log, named as in reset
+     *  (HEAD@{n}, [branch]@{n}), for gc and fsck. The HEAD of another
+     *  worktree is named worktrees/[directory name]/HEAD. */
+    static Map<String, String> allEntries() {
+        Map<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, File> log : allLogs().entrySet()) {
+            List<Entry> logEntries = entries(log.getValue());
+            for (int i = 0; i < logEntries.size(); i++) {
+                entries.put(log.getKey() + "@{" + i + "}", logEntries.get(i).newID);
+            }
+        }
+        return entries;
+    }
+
+    /** Return the log file of every ref of every worktree, by the name used in allEntries. */
+    private static Map<String, File> allLogs() {
+        Map<String, File> logs = new TreeMap<>();
+        File logsDir = Repository.commonPath("logs");
+        collect(logsDir, logsDir, logs);
+        for (Worktree worktree : Worktree.all(Repository.commonPath())) {
+            File file = Utils.join(worktree.gitletDir, "logs", HEAD);
+            if (!worktree.isMain() && file.isFile()) {
+                logs.put(worktree.refName(HEAD), file);
+            }
+        }
+        return logs;
+    }
+
+    private static void collect(File logsDir, File dir, Map<String, File> logs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(logsDir, file, logs);
+                continue;
+            }
+            String ref = logsDir.toPath().relativize(file.toPath()).toString()
+                    .replace(File.separatorChar, '/');
+            logs.put(ref.startsWith("refs/heads/") ? ref.substring(11) : ref, file);
+        }
+    }
+
+    /** Drop the entries of every log written at or before CUTOFF, in epoch
+     *  seconds, and return how many were dropped. A log is replaced at once
+     *  by its records after the last expired one. */
+    static int expire(long cutoff) {
+        int expired = 0;
+        for (File file : allLogs().values()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Utils.readContents(file));
+            int count = buffer.capacity() / RECORD_SIZE;
+            int first = 0;
+            while (first < count && buffer.getLong(first * RECORD_SIZE + 40) <= cutoff) {
+                first++;
+            }
+            if (first == 0) {
+                continue;
+            }
+            File tmpFile = new File(file.getPath() + ".tmp");
+            Utils.writeContents(tmpFile, Arrays.copyOfRange(buffer.array(),
+                    first * RECORD_SIZE, count * RECORD_SIZE));
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw Utils.error("Can't write the reflog: " + excp.getMessage());
+            }
+            expired += first;
+        }
+        return expired;
+    }
+
+    static void delete(String ref) {
+        logFile(ref).delete();
+    }
+}
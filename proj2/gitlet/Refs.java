@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** The refs of a repository: branches (refs/heads), tags (refs/tags) and
+ *  remote branches (refs/remotes), each naming a commit or a tag object.
+ *  A ref is stored either loose, as a file at its path under .gitlet, or in
+ *  .gitlet/packed-refs, which holds one "[ID] [ref name]" line per ref,
+ *  sorted by name, after a header line. gitlet pack-refs moves every loose
+ *  ref into it. The file is memory-mapped and looked up by a binary search
+ *  over byte offsets (backing up to the start of the line hit), so reading
+ *  a ref costs one stat and O(log n) line comparisons however many refs
+ *  there are, and no directory is listed. As in Git, a loose ref is newer
+ *  than its packed copy: updates are written loose, and a loose file wins.
+ *  Deleting a packed ref rewrites packed-refs without it.
+ *  Refs are shared by all the worktrees of a repository, see Worktree.
+ *
+ *  @author Li Yanzhuo
+ */
+class Refs {
+    static final String HEADS = "refs/heads/";
+    static final String TAGS = "refs/tags/";
+    private static final String HEADER = "# pack-refs with: sorted\n";
+    private static final int ID_LENGTH = Utils.UID_LENGTH;
+
+    private Refs() {
+    }
+
+    static File packedRefsFile() {
+        return Repository.commonPath("packed-refs");
+    }
+
+    /** Return the ID REF points to, or null if there is no such ref. */
+    static String read(String ref) {
+        File file = Repository.commonPath(ref);
+        if (file.isFile()) {
+            return Utils.readContentsAsString(file).trim();
+        }
+        return readPacked(ref);
+    }
+
+    static boolean exists(String ref) {
+        return read(ref) != null;
+    }
+
+    /** Point REF to ID. The ref is written loose, overriding a packed copy. */
+    static void write(String ref, String id) {
+        File file = Repository.commonPath(ref);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, id);
+    }
+
+    /** Delete REF, loose and packed. */
+    static void delete(String ref) {
+        Repository.commonPath(ref).delete();
+        if (readPacked(ref) != null) {
+            SortedMap<String, String> refs = listPacked("");
+            refs.remove(ref);
+            writePacked(refs);
+        }
+    }
+
+    /** Return every ref whose name starts with PREFIX (e.g. refs/heads/),
+     *  with the ID it points to, in name order. */
+    static SortedMap<String, String> list(String prefix) {
+        SortedMap<String, String> refs = listPacked(prefix);
+        String dir = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        collectLoose(Repository.commonPath(dir), dir, prefix, refs);
+        return refs;
+    }
+
+    /** Move every loose ref into packed-refs. Returns the number of refs moved. */
+    static int pack() {
+        SortedMap<String, String> loose = new TreeMap<>();
+        collectLoose(Repository.commonPath("refs/"), "refs/", "refs/", loose);
+        if (loose.isEmpty()) {
+            return 0;
+        }
+        SortedMap<String, String> refs = listPacked("");
+        refs.putAll(loose);
+        writePacked(refs);
+        for (String ref : loose.keySet()) {
+            Repository.commonPath(ref).delete();
+        }
+        return loose.size();
+    }
+
+    private static void collectLoose(File dir, String dirName, String prefix,
+                                     Map<String, String> refs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = dirName + file.getName();
+            if (file.isDirectory()) {
+                collectLoose(file, name + "/", prefix, refs);
+            } else if (name.startsWith(prefix)) {
+                refs.put(name, Utils.readContentsAsString(file).trim());
+            }
+        }
+    }
+
+    /* Packed refs. */
+
+    /** Return the mapped packed-refs file of the repository, mapped on
+     *  first use, or null if there is none. */
+    private static synchronized ByteBuffer packed() {
+        Store store = Repository.store();
+        if (store.packedRefs == null) {
+            if (!packedRefsFile().isFile()) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(packedRefsFile().toPath(),
+                    StandardOpenOption.READ)) {
+                store.packedRefs = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException excp) {
+                throw Utils.error("Can't read packed-refs: " + excp.getMessage());
+            }
+        }
+        return store.packedRefs;
+    }
+
+    /** Compare the ref name of the line starting at LINE with NAME. */
+    private static int compareName(ByteBuffer buffer, int line, byte[] name) {
+        int p = line + ID_LENGTH + 1;
+        for (int i = 0; ; i++, p++) {
+            boolean lineEnded = p >= buffer.limit() || buffer.get(p) == '\n';
+            if (i == name.length) {
+                return lineEnded ? 0 : 1;
+            }
+            if (lineEnded) {
+                return -1;
+            }
+            int c = Integer.compare(buffer.get(p) & 0xFF, name[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+    }
+
+    private static int nextLine(ByteBuffer buffer, int p) {
+        while (p < buffer.limit() && buffer.get(p) != '\n') {
+            p++;
+        }
+        return p + 1;
+    }
+
+    /** Return the offset of the first line whose name is at least NAME. */
+    private static int lowerBound(ByteBuffer buffer, byte[] name) {
+        int lo = HEADER.length();
+        int hi = buffer.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int line = mid;
+            while (line > lo && buffer.get(line - 1) != '\n') {
+                line--;
+            }
+            if (compareName(buffer, line, name) < 0) {
+                lo = nextLine(buffer, line);
+            } else {
+                hi = line;
+            }
+        }
+        return lo;
+    }
+
+    private static String lineID(ByteBuffer buffer, int line) {
+        byte[] id = new byte[ID_LENGTH];
+        buffer.get(line, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    private static String readPacked(String ref) {
+        ByteBuffer buffer = packed();
+        if (buffer == null) {
+            return null;
+        }
+        byte[] name = ref.getBytes(StandardCharsets.UTF_8);
+        int line = lowerBound(buffer, name);
+        if (line < buffer.limit() && compareName(buffer, line, name) == 0) {
+            return lineID(buffer, line);
+        }
+        return null;
+    }
+
+    /** Return the packed refs starting with PREFIX; a range of lines found
+     *  by the same binary search. */
+    private static SortedMap<String, String> listPacked(String prefix) {
+        SortedMap<String, String> refs = new TreeMap<>();
+        ByteBuffer buffer = packed();
+        if (buffer == null) {
+            return refs;
+        }
+        int line = lowerBound(buffer, prefix.getBytes(StandardCharsets.UTF_8));
+        while (line < buffer.limit()) {
+            int end = nextLine(buffer, line);
+            byte[] name = new byte[end - 1 - (line + ID_LENGTH + 1)];
+            buffer.get(line + ID_LENGTH + 1, name);
+            String ref = new String(name, StandardCharsets.UTF_8);
+            if (!ref.startsWith(prefix)) {
+                break;
+            }
+            refs.put(ref, lineID(buffer, line));
+            line = end;
+        }
+        return refs;
+    }
+
+    /** Replace packed-refs with REFS, atomically. */
+    private static void writePacked(SortedMap<String, String> refs) {
+        File tmpFile = Repository.commonPath("packed-refs.tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(tmpFile,
+                StandardCharsets.UTF_8))) {
+            out.write(HEADER);
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                out.write(ref.getValue() + " " + ref.getKey() + "\n");
+            }
+        } catch (IOException excp) {
+            tmpFile.delete();
+            throw Utils.error("Can't write packed-refs: " + excp.getMessage());
+        }
+        try {
+            Files.move(tmpFile.toPath(), packedRefsFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Can't write packed-refs: " + excp.getMessage());
+        }
+        Repository.store().packedRefs = null;
+    }
+}
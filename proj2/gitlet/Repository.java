@@ -1,7 +1,10 @@
 package gitlet;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static gitlet.Utils.*;
 
@@ -27,20 +30,63 @@ public class Repository {
      * variable is used. We've provided two examples for you.
      */
 
+    /** The worktree the commands run in: the current working directory by
+     *  default, see Worktree. */
+    private static Worktree worktree = new Worktree(new File(System.getProperty("user.dir")));
+
+    /** Return the worktree the commands run in. */
+    static Worktree worktree() {
+        return worktree;
+    }
+
+    /** Return the shared .gitlet of the worktree the commands run in. */
+    static Store store() {
+        return worktree.store;
+    }
+
+    /** Run the following commands in the worktree W. The caches are held
+     *  by W and its Store, so nothing has to be dropped or read again. */
+    static void useWorktree(Worktree w) {
+        worktree = w;
+    }
+
     /** The current working directory. */
-    public static final File CWD = new File(System.getProperty("user.dir"));
-    /** The .gitlet directory. */
-    public static final File GITLET_DIR = join(CWD, ".gitlet");
+    static File cwd() {
+        return worktree.workDir;
+    }
+
+    /** The .gitlet directory of the working directory. */
+    static File gitletDir() {
+        return worktree.gitletDir;
+    }
 
-    static final File HEAD_FILE = join(GITLET_DIR, "HEAD");
-    static final File INDEX_FILE = join(GITLET_DIR, "index");
-    static final File COMMITS_DIR = join(GITLET_DIR, "commits");
-    static final File BLOBS_DIR = join(GITLET_DIR, "blobs");
-    static final File REFS_DIR = join(GITLET_DIR, "refs");
-    static final File BRANCHES_DIR = join(REFS_DIR, "heads");
-    static final File MASTER_FILE = join(BRANCHES_DIR, "master");
-    static final File REMOTES_BRANCHES = join(REFS_DIR, "remotes");
-    static final File REMOTES_ADDRESS = join(GITLET_DIR, "remotes");
+    /** Return the file at PATH in the .gitlet directory shared by every
+     *  worktree, where the objects, refs and settings are. */
+    static File commonPath(String... path) {
+        return Utils.join(worktree.commonDir, path);
+    }
+
+    /** Return the file at PATH in the .gitlet directory of the working directory. */
+    static File worktreePath(String... path) {
+        return Utils.join(worktree.gitletDir, path);
+    }
+
+    static File headFile() {
+        return worktree.headFile();
+    }
+
+    static File indexFile() {
+        return worktree.indexFile();
+    }
+
+    /** The stash entries, one commit ID per line, the newest first. */
+    static File stashFile() {
+        return commonPath("stash");
+    }
+
+    private static File remotesFile() {
+        return commonPath("remotes");
+    }
 
 
     /**The java gitlet.Main init will set up the persistence after checking errors:
@@ -52,19 +98,19 @@ public class Repository {
      * */
     static void init() {
         //error checking: if there is an existing .gitlet folder in the CWD
-        if (GITLET_DIR.exists() && GITLET_DIR.isDirectory()) {
+        if (gitletDir().exists() && gitletDir().isDirectory()) {
             System.out.println("A Gitlet version-control system already exists "
                     + "in the current directory.");
             System.exit(0);
         }
-        GITLET_DIR.mkdir();
+        gitletDir().mkdir();
 
-        COMMITS_DIR.mkdir();
-        BLOBS_DIR.mkdir();
-        REFS_DIR.mkdir();
-        BRANCHES_DIR.mkdir();
-        REMOTES_BRANCHES.mkdir();
-        REMOTES_ADDRESS.mkdir();
+        commonPath("commits").mkdir();
+        commonPath("blobs").mkdir();
+        commonPath("trees").mkdir();
+        commonPath("refs", "heads").mkdirs();
+        commonPath("refs", "remotes").mkdir();
+        remotesFile().mkdir();
 
         makeInitCommit();
     }
@@ -79,9 +125,11 @@ public class Repository {
 
         // initialize master file
         String commitID = initCommit.getCommitID();
-        Utils.writeContents(MASTER_FILE, commitID);
+        Refs.write(Refs.HEADS + "master", commitID);
         // initialize HEAD file
-        writeContents(HEAD_FILE, "ref: refs/heads/master");
+        writeContents(headFile(), "ref: refs/heads/master");
+        RefLog.append(RefLog.branchRef("master"), null, commitID, RefLog.Action.INIT);
+        RefLog.append(RefLog.HEAD, null, commitID, RefLog.Action.INIT);
         // initialize staging area
         HashMap<String, String> files = new HashMap<>();
         saveStagingArea(files);
@@ -95,7 +143,7 @@ public class Repository {
      * else, put it into the staging area and save the blob into file system.
      * */
     static void add(String fileName) {
-        File file = Utils.join(CWD, fileName);
+        File file = Utils.join(cwd(), fileName);
         if (!file.exists()) {
             System.out.println("File does not exist.");
             System.exit(0);
@@ -128,7 +176,7 @@ public class Repository {
         newCommit.save();
         HashMap<String, String> emptyMap = new HashMap<>();
         saveStagingArea(emptyMap);
-        updatePointers(newCommit.getCommitID());
+        updatePointers(newCommit.getCommitID(), RefLog.Action.COMMIT);
     }
 
     static void commit(String message, Commit mergeCommit) {
@@ -137,7 +185,7 @@ public class Repository {
         newCommit.save();
         HashMap<String, String> emptyMap = new HashMap<>();
         saveStagingArea(emptyMap);
-        updatePointers(newCommit.getCommitID());
+        updatePointers(newCommit.getCommitID(), RefLog.Action.MERGE);
     }
 
     /**The java gitlet.Main rm [file name] modifies the staging area,
@@ -159,11 +207,11 @@ public class Repository {
         }
 
         Commit curCommit = getCurCommit();
-        boolean trackedByCurCommit = curCommit.getFiles().containsKey(fileName);
+        boolean trackedByCurCommit = curCommit.getBlobID(fileName) != null;
         if (trackedByCurCommit) {
             stagingMap.put(fileName, "REMOVE");
 
-            File rmFile = Utils.join(CWD, fileName);
+            File rmFile = Utils.join(cwd(), fileName);
             Utils.restrictedDelete(rmFile);
         }
 
@@ -194,18 +242,42 @@ public class Repository {
         }
     }
 
+    /**Like log, but only displays the commits that changed the given file
+     * compared to their first parent. The walk follows the commit graph,
+     * and a commit is only loaded when its Bloom filter of changed paths
+     * says it might have touched the file. */
+    static void log(String fileName) {
+        checkRepo();
+        CommitGraph graph = CommitGraph.load();
+        String commitID = getHEADcommitID();
+        graph.ensure(commitID);
+        graph.save();
+
+        StringBuilder logMessage = new StringBuilder();
+        while (commitID != null) {
+            CommitGraph.Entry entry = graph.get(commitID);
+            if (entry.mightHaveChanged(fileName)) {
+                Commit commit = Commit.load(commitID);
+                String blobID = commit.getBlobID(fileName);
+                String parentBlobID = null;
+                if (entry.firstParentID != null) {
+                    parentBlobID = Commit.load(entry.firstParentID).getBlobID(fileName);
+                }
+                if (!Objects.equals(blobID, parentBlobID)) {
+                    logMessage.append(commit.getLog());
+                }
+            }
+            commitID = entry.firstParentID;
+        }
+        System.out.println(logMessage);
+    }
+
     /**Like log, except displays information about all commits ever made.
      * The order of the commits does not matter. */
     static void globalLog() {
-        File[] subDirs = COMMITS_DIR.listFiles();
-        if (subDirs != null) {
-            for (File subDir : subDirs) {
-                List<String> commitIDs = Utils.plainFilenamesIn(subDir);
-                for (String commitID : commitIDs) {
-                    Commit commit = Commit.load(commitID);
-                    System.out.println(commit.getLog());
-                }
-            }
+        for (String commitID : ObjectType.COMMIT.allIDs()) {
+            Commit commit = Commit.load(commitID);
+            System.out.println(commit.getLog());
         }
     }
 
@@ -213,17 +285,10 @@ public class Repository {
      * If there are multiple such commits, it prints the ids out on separate lines.*/
     static void find(String message) {
         StringBuilder findMessage = new StringBuilder();
-        File[] subDirs = COMMITS_DIR.listFiles();
-        if (subDirs != null) {
-            for (File subDir : subDirs) {
-                List<String> commitIDs = Utils.plainFilenamesIn(subDir);
-                for (String commitID : commitIDs) {
-                    Commit commit = Commit.load(commitID);
-                    if (commit.getMessage().equals(message)) {
-                        findMessage.append(commit.getCommitID()).append("\n");
-                    }
-                }
-
+        for (String commitID : ObjectType.COMMIT.allIDs()) {
+            Commit commit = Commit.load(commitID);
+            if (commit.getMessage().equals(message)) {
+                findMessage.append(commit.getCommitID()).append("\n");
             }
         }
 
@@ -247,7 +312,7 @@ public class Repository {
      * working directory (i.e., one containing a .gitlet subdirectory),
      * but is not in such a directory*/
     private static void checkRepo() {
-        if (!GITLET_DIR.exists() || !GITLET_DIR.isDirectory()) {
+        if (!gitletDir().exists() || !gitletDir().isDirectory()) {
             System.out.println("Not in an initialized Gitlet directory.");
             System.exit(0);
         }
@@ -255,8 +320,10 @@ public class Repository {
 
     private static void printBranches() {
         // get all branches in order
-        List<String> branches = plainFilenamesIn(BRANCHES_DIR);
-        branches.sort(null);
+        List<String> branches = new ArrayList<>();
+        for (String ref : Refs.list(Refs.HEADS).keySet()) {
+            branches.add(ref.substring(Refs.HEADS.length()));
+        }
 
         // get current branch
         boolean detached = true;
@@ -280,7 +347,7 @@ public class Repository {
     /**Return the name of the current branch.*/
     private static String getCurrentBranchName() {
         String currentBranch = null;
-        String headContent = Utils.readContentsAsString(HEAD_FILE);
+        String headContent = Utils.readContentsAsString(headFile());
         if (headContent.length() < 6) {
             throw error("HEAD file content is invalid: " + headContent);
         }
@@ -337,6 +404,10 @@ public class Repository {
         for (Map.Entry<String, String> entry : commitMap.entrySet()) {
             String fileName = entry.getKey();
             String commitBlobID = entry.getValue();
+            // outside the sparse checkout: not in the working directory on purpose
+            if (!Sparse.includes(fileName)) {
+                continue;
+            }
             // Tracked in the current commit, changed in the working directory, but not staged
             if ((workingDirFiles.containsKey(fileName)
                     && !workingDirFiles.get(fileName).equals(commitBlobID))
@@ -355,7 +426,7 @@ public class Repository {
         for (Map.Entry<String, String> entry: stagingMap.entrySet()) {
             String fileName = entry.getKey();
             String stagingBlobID = entry.getValue();
-            if (!stagingBlobID.equals("REMOVE")) {
+            if (!stagingBlobID.equals("REMOVE") && Sparse.includes(fileName)) {
                 // Staged for addition, but deleted in the working directory
                 if (!workingDirFiles.containsKey(fileName)) {
                     modifiedFiles.add(fileName + " (deleted)");
@@ -414,14 +485,13 @@ public class Repository {
     /**Takes the version of the file as it exists in the given commit,
      * and puts it in the working directory. */
     private static void checkoutFile(String fileName, Commit commit) {
-        HashMap<String, String> commitFiles = commit.getFiles();
+        String blobID = commit.getBlobID(fileName);
         // check error
-        if (!commitFiles.containsKey(fileName)) {
+        if (blobID == null) {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
         }
 
-        String blobID = commitFiles.get(fileName);
         Blob.copyContentToFile(fileName, blobID);
     }
 
@@ -431,8 +501,7 @@ public class Repository {
      * untracked files, if not being overwritten, would be reserved.*/
     static void checkoutBranch(String branchName) {
         // error checking
-        List<String> branchNames = Utils.plainFilenamesIn(BRANCHES_DIR);
-        if (!branchNames.contains(branchName)) {
+        if (!Refs.exists(Refs.HEADS + branchName)) {
             System.out.println("No such branch exists.");
             System.exit(0);
         }
@@ -442,29 +511,34 @@ public class Repository {
             System.out.println("No need to checkout the current branch.");
             System.exit(0);
         }
+        if (otherWorktreeOn(branchName) != null) {
+            System.out.println("That branch is checked out in another worktree.");
+            System.exit(0);
+        }
 
         Commit targetCommit = getCommitFromBranch(branchName);
-        untrackedFailCase(targetCommit);
+        untrackedFailCase(targetCommit.getFileTree());
+        String oldCommitID = getHEADcommitID();
         checkoutCommit(targetCommit);
 
         String headContent = "ref: refs/heads/" + branchName;
-        Utils.writeContents(HEAD_FILE, headContent);
+        Utils.writeContents(headFile(), headContent);
+        RefLog.append(RefLog.HEAD, oldCommitID, targetCommit.getCommitID(),
+                RefLog.Action.CHECKOUT);
     }
 
     /**A helper method for checkout, that handles failure case:
      * If a working file is untracked in the current branch
      * and would be overwritten by checkout, print message and exit*/
-    private static void untrackedFailCase(Commit targetCommit) {
-        HashMap<String, String> targetMap = targetCommit.getFiles();
-
+    private static void untrackedFailCase(FileTree targetTree) {
         Commit currentCommit = getCurCommit();
-        HashMap<String, String> commitMap = currentCommit.getFiles();
+        FileTree commitTree = currentCommit.getFileTree();
         HashMap<String, String> stagingMap = loadStagingArea();
         HashMap<String, String> workingDirFiles = getWorkingDirFiles();
         // check untracked files that would be overwritten
         for (String fileName : workingDirFiles.keySet()) {
-            if (!stagingMap.containsKey(fileName) && !commitMap.containsKey(fileName)
-                    && targetMap.containsKey(fileName)) {
+            if (!stagingMap.containsKey(fileName) && !commitTree.containsKey(fileName)
+                    && targetTree.containsKey(fileName)) {
                 System.out.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
                 System.exit(0);
@@ -475,8 +549,10 @@ public class Repository {
     /**A helper method for checkout branch and reset.
      * It overwrites the working dir into the current commit
      * and cleans the staging area.
+     * Files outside the sparse checkout are neither written nor deleted.
      * ps. HEAD updating is not handled here!*/
     private static void checkoutCommit(Commit targetCommit) {
+        long start = Trace.start();
         HashMap<String, String> targetMap = targetCommit.getFiles();
         HashMap<String, String> workingDirFiles = getWorkingDirFiles();
 
@@ -484,6 +560,9 @@ public class Repository {
         for (Map.Entry<String, String> entry: targetMap.entrySet()) {
             String fileName = entry.getKey();
             String blobID = entry.getValue();
+            if (!Sparse.includes(fileName)) {
+                continue;
+            }
             if (workingDirFiles.containsKey(fileName)) {
                 if (!blobID.equals(workingDirFiles.get(fileName))) {
                     Blob.copyContentToFile(fileName, blobID);
@@ -496,33 +575,30 @@ public class Repository {
         Commit currentCommit = getCurCommit();
         HashMap<String, String> commitMap = currentCommit.getFiles();
         for (String fileName: commitMap.keySet()) {
-            if (!targetMap.containsKey(fileName)) {
-                File file = Utils.join(CWD, fileName);
+            if (!targetMap.containsKey(fileName) && Sparse.includes(fileName)) {
+                File file = Utils.join(cwd(), fileName);
                 Utils.restrictedDelete(file);
             }
         }
 
         HashMap<String, String> stagingMap = new HashMap<>();
         saveStagingArea(stagingMap);
-
+        Trace.end("checkout-commit", start);
     }
 
     /**Creates a new branch with the given name, and points it at the current head commit.
      * This command does NOT immediately switch to the newly created branch
      * (just as in real Git). */
     static void branch(String branchName) {
-        File newBranch = Utils.join(BRANCHES_DIR, branchName);
         // check whether already exists
-        File[] branches = BRANCHES_DIR.listFiles();
-        if (branches != null) {
-            if (Arrays.asList(branches).contains(newBranch)) {
-                System.out.println("A branch with that name already exists.");
-                System.exit(0);
-            }
+        if (Refs.exists(Refs.HEADS + branchName)) {
+            System.out.println("A branch with that name already exists.");
+            System.exit(0);
         }
 
         String currentCommitID = getHEADcommitID();
-        Utils.writeContents(newBranch, currentCommitID);
+        Refs.write(Refs.HEADS + branchName, currentCommitID);
+        RefLog.append(RefLog.branchRef(branchName), null, currentCommitID, RefLog.Action.BRANCH);
     }
 
     /**Deletes the branch with the given name.
@@ -535,29 +611,141 @@ public class Repository {
             System.out.println("Cannot remove the current branch.");
             System.exit(0);
         }
+        if (otherWorktreeOn(branchName) != null) {
+            System.out.println("Cannot remove a branch checked out in another worktree.");
+            System.exit(0);
+        }
 
-        File targetBranch = Utils.join(BRANCHES_DIR, branchName);
-        File[] branches = BRANCHES_DIR.listFiles();
-        if (branches != null) {
-            if (!Arrays.asList(branches).contains(targetBranch)) {
-                System.out.println("A branch with that name does not exist.");
-                System.exit(0);
-            }
+        if (!Refs.exists(Refs.HEADS + branchName)) {
+            System.out.println("A branch with that name does not exist.");
+            System.exit(0);
         }
-        targetBranch.delete();
+        Refs.delete(Refs.HEADS + branchName);
+        RefLog.delete(RefLog.branchRef(branchName));
     }
 
 
     /**Checks out all the files tracked by the given commit.
-     * Removes tracked files that are not present in that commit.*/
+     * Removes tracked files that are not present in that commit.
+     * The commit may be given as a tag name, or as a reflog entry: @{n} is
+     * the n-th previous position of the current branch, [branch]@{n} or
+     * HEAD@{n} of another log.*/
     static void reset(String commitID) {
+        String tagged = Refs.read(Refs.TAGS + commitID);
+        if (commitID.contains("@{")) {
+            commitID = resolveRefLogEntry(commitID);
+        } else if (tagged != null) {
+            commitID = Tag.peel(tagged);
+        }
         Commit targetCommit = Commit.load(commitID);
-        untrackedFailCase(targetCommit);
+        untrackedFailCase(targetCommit.getFileTree());
         checkoutCommit(targetCommit); // handles working dir and staging area
         // update the head of current branch
-        String currentBranchName = getCurrentBranchName();
-        File currentBranch = Utils.join(BRANCHES_DIR, currentBranchName);
-        writeContents(currentBranch, commitID);
+        updatePointers(targetCommit.getCommitID(), RefLog.Action.RESET);
+    }
+
+    /**Creates a tag pointing at the head commit: a lightweight tag is only a
+     * ref to the commit; an annotated tag (MESSAGE not null) is a Tag object
+     * holding the message, and the ref points to that object.*/
+    static void tag(String tagName, String message) {
+        checkRepo();
+        if (Refs.exists(Refs.TAGS + tagName)) {
+            System.out.println("A tag with that name already exists.");
+            System.exit(0);
+        }
+        String commitID = getHEADcommitID();
+        if (message == null) {
+            Refs.write(Refs.TAGS + tagName, commitID);
+        } else {
+            Tag tag = new Tag(tagName, commitID, message);
+            tag.save();
+            Refs.write(Refs.TAGS + tagName, tag.getHashID());
+        }
+    }
+
+    /**Deletes the tag with the given name; the commit it points to is not touched.*/
+    static void deleteTag(String tagName) {
+        checkRepo();
+        if (!Refs.exists(Refs.TAGS + tagName)) {
+            System.out.println("A tag with that name does not exist.");
+            System.exit(0);
+        }
+        Refs.delete(Refs.TAGS + tagName);
+    }
+
+    /**Prints the names of all the tags, in order.*/
+    static void tagList() {
+        checkRepo();
+        StringBuilder sb = new StringBuilder();
+        for (String ref : Refs.list(Refs.TAGS).keySet()) {
+            sb.append(ref.substring(Refs.TAGS.length())).append('\n');
+        }
+        System.out.print(sb);
+    }
+
+    /**Moves every loose ref into the packed-refs file, see Refs.*/
+    static void packRefs() {
+        checkRepo();
+        Refs.pack();
+    }
+
+    /**Prints the reflog of a branch, or of HEAD if REF is null, the newest first,
+     * one line per entry: the short commit ID, the entry and what moved the ref.*/
+    static void reflog(String ref) {
+        checkRepo();
+        String logRef = RefLog.HEAD;
+        if (ref != null && !ref.equals(RefLog.HEAD)) {
+            if (!Refs.exists(Refs.HEADS + ref)) {
+                System.out.println("A branch with that name does not exist.");
+                System.exit(0);
+            }
+            logRef = RefLog.branchRef(ref);
+        }
+        String name = ref == null ? RefLog.HEAD : ref;
+        StringBuilder sb = new StringBuilder();
+        List<RefLog.Entry> entries = RefLog.entries(logRef);
+        for (int i = 0; i < entries.size(); i++) {
+            RefLog.Entry entry = entries.get(i);
+            sb.append(entry.newID, 0, 7).append(' ').append(name).append("@{").append(i)
+                    .append("}: ").append(entry.describe()).append('\n');
+        }
+        System.out.print(sb);
+    }
+
+    /**Drops the reflog entries of every ref older than SECONDS, so that gc can
+     * collect the commits only they still refer to.*/
+    static void reflogExpire(long seconds) {
+        checkRepo();
+        int expired = RefLog.expire(System.currentTimeMillis() / 1000 - seconds);
+        System.out.println("Expired " + expired + " reflog entries.");
+    }
+
+    /**Returns the commit ID of a reflog entry: @{n}, HEAD@{n} or [branch]@{n}.
+     * A bare @{n} reads the log of the current branch, or of HEAD when detached.*/
+    private static String resolveRefLogEntry(String rev) {
+        int at = rev.indexOf("@{");
+        String name = rev.substring(0, at);
+        int n;
+        try {
+            n = Integer.parseInt(rev.substring(at + 2, rev.length() - 1));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException excp) {
+            n = -1;
+        }
+        if (!rev.endsWith("}") || n < 0) {
+            System.out.println("No commit with that id exists.");
+            System.exit(0);
+        }
+        if (name.isEmpty()) {
+            name = getCurrentBranchName() == null ? RefLog.HEAD : getCurrentBranchName();
+        }
+        String ref = name.equals(RefLog.HEAD) ? RefLog.HEAD : RefLog.branchRef(name);
+        RefLog.Entry entry = RefLog.get(ref, n);
+        if (entry == null) {
+            System.out.println("Log for " + name + " only has " + RefLog.size(ref)
+                    + " entries.");
+            System.exit(0);
+        }
+        return entry.newID;
     }
 
     static void merge(String givenBranchName) {
@@ -586,7 +774,7 @@ public class Repository {
             return;
         }
 
-        untrackedFailCase(givenCommit);
+        untrackedFailCase(givenCommit.getFileTree());
 
         HashMap<String, String> splitMap = splitCommit.getFiles();
         HashMap<String, String> curMap = curCommit.getFiles();
@@ -597,36 +785,20 @@ public class Repository {
         addKeysToSet(curMap, allFileNames);
         addKeysToSet(givenMap, allFileNames);
 
+        // every file is merged on its own, so the merge results are computed in
+        // parallel without side effects; the working files, conflict blobs and
+        // staging updates are then written in file name order on this thread
+        TreeMap<String, MergedFile> merged = allFileNames.parallelStream()
+                .map(fileName -> mergeFile(fileName, splitMap, curMap, givenMap))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(m -> m.fileName, m -> m, (a, b) -> a, TreeMap::new));
         boolean conflicted = false;
-        for (String fileName : allFileNames) {
-            String notExist = "null";
-            String splitID = splitMap.getOrDefault(fileName, notExist);
-            String curID = curMap.getOrDefault(fileName, notExist);
-            String givenID = givenMap.getOrDefault(fileName, notExist);
-
-            if (!splitID.equals(curID) && !splitID.equals(givenID)
-                    && !curID.equals(givenID)) {
-                conflict(fileName, curID, givenID, stagingMap);
-                conflicted = true;
-            }
-
-            if (splitID.equals(curID) && !splitID.equals(givenID)) {
-                if (givenMap.containsKey(fileName)) {
-                    checkoutFile(fileName, givenCommit);
-                    stagingMap.put(fileName, givenMap.get(fileName));
-                } else {
-                    File rmFile = Utils.join(CWD, fileName);
-                    Utils.restrictedDelete(rmFile);
-                    stagingMap.put(fileName, "REMOVE");
-                }
-            }
-
-            //? check whether the same name file exists in working dir
-            if ((curID.equals(notExist) && givenID.equals(notExist))
-                    || (splitID.equals(givenID) && curID.equals(notExist))) {
-                File rmFile = Utils.join(CWD, fileName);
-                Utils.restrictedDelete(rmFile);
+        for (MergedFile m : merged.values()) {
+            m.apply();
+            if (m.stagedID != null) {
+                stagingMap.put(m.fileName, m.stagedID);
             }
+            conflicted |= m.conflicted;
         }
 
         saveStagingArea(stagingMap);
@@ -637,34 +809,93 @@ public class Repository {
         }
     }
 
-    /**A helper method for merge to handle conflict cases.*/
-    private static void conflict(String fileName, String curBlobID, String givenBlobID,
-                                 HashMap<String, String> stagingMap) {
-        File targetFile = Utils.join(CWD, fileName);
+    /**The result of merging one file: its staging update and the change to
+     * make to its working file.*/
+    private static class MergedFile {
+        final String fileName;
+        /** A blob ID, "REMOVE", or null if the staging area keeps the file as is. */
+        final String stagedID;
+        final boolean conflicted;
+        /** The conflict blob to save, or null. */
+        final Blob conflictBlob;
+        /** The blob to write to the working file, null to leave it, or "REMOVE" to delete it. */
+        final String workingID;
+
+        MergedFile(String fileName, String stagedID, boolean conflicted,
+                   Blob conflictBlob, String workingID) {
+            this.fileName = fileName;
+            this.stagedID = stagedID;
+            this.conflicted = conflicted;
+            this.conflictBlob = conflictBlob;
+            this.workingID = workingID;
+        }
 
-        String curContent;
-        String givenContent;
-        if (curBlobID.equals("null")) {
-            curContent = "";
-        } else {
-            Blob curBlob = Blob.load(curBlobID);
-            curContent = curBlob.getContentAsString();
+        /** Save the conflict blob, then write or delete the working file if
+         *  it is in the sparse checkout. */
+        void apply() {
+            if (conflictBlob != null) {
+                conflictBlob.save();
+            }
+            if (workingID == null || !Sparse.includes(fileName)) {
+                return;
+            }
+            File file = Utils.join(cwd(), fileName);
+            if (workingID.equals("REMOVE")) {
+                Utils.restrictedDelete(file);
+            } else if (conflictBlob != null && workingID.equals(conflictBlob.getHashID())) {
+                Utils.writeContents(file, conflictBlob.getContent());
+            } else {
+                Blob.copyContentToFile(fileName, workingID);
+            }
         }
-        if (givenBlobID.equals("null")) {
-            givenContent = "";
-        } else {
-            Blob givenBlob = Blob.load(givenBlobID);
-            givenContent = givenBlob.getContentAsString();
+    }
+
+    /**A helper method for merge that merges one file. It only reads blobs,
+     * and returns what to stage and write for the file, or null if nothing
+     * changes, so that it may run for many files at once.*/
+    private static MergedFile mergeFile(String fileName, HashMap<String, String> splitMap,
+                                        HashMap<String, String> curMap,
+                                        HashMap<String, String> givenMap) {
+        String notExist = "null";
+        String splitID = splitMap.getOrDefault(fileName, notExist);
+        String curID = curMap.getOrDefault(fileName, notExist);
+        String givenID = givenMap.getOrDefault(fileName, notExist);
+
+        if (!splitID.equals(curID) && !splitID.equals(givenID)
+                && !curID.equals(givenID)) {
+            return conflict(fileName, curID, givenID);
         }
 
-        String content = "<<<<<<< HEAD\n" + curContent + "=======\n"
-                + givenContent + ">>>>>>>\n";
-        Utils.writeContents(targetFile, content);
+        if (splitID.equals(curID) && !splitID.equals(givenID)) {
+            if (givenMap.containsKey(fileName)) {
+                return new MergedFile(fileName, givenID, false, null, givenID);
+            }
+            return new MergedFile(fileName, "REMOVE", false, null, "REMOVE");
+        }
+
+        //? check whether the same name file exists in working dir
+        if ((curID.equals(notExist) && givenID.equals(notExist))
+                || (splitID.equals(givenID) && curID.equals(notExist))) {
+            return new MergedFile(fileName, null, false, null, "REMOVE");
+        }
+        return null;
+    }
 
-        Blob targetBlob = new Blob(targetFile);
-        String targetID = targetBlob.getHashID();
-        targetBlob.save();
-        stagingMap.put(fileName, targetID);
+    /**A helper method for merge to handle conflict cases: the conflicted file
+     * gets a blob with both versions between conflict markers.
+     * A binary file gets no conflict markers: the current version is kept,
+     * or the given one if the current commit removed the file.*/
+    private static MergedFile conflict(String fileName, String curBlobID, String givenBlobID) {
+        Blob targetBlob = TreeMerge.conflictBlob(curBlobID.equals("null") ? null : curBlobID,
+                givenBlobID.equals("null") ? null : givenBlobID);
+        if (targetBlob == null) {
+            if (curBlobID.equals("null")) {
+                return new MergedFile(fileName, givenBlobID, true, null, givenBlobID);
+            }
+            return new MergedFile(fileName, curBlobID, true, null, null);
+        }
+        return new MergedFile(fileName, targetBlob.getHashID(), true,
+                targetBlob, targetBlob.getHashID());
     }
 
     /**A helper method that will add all the keys in the map into the set.*/
@@ -674,79 +905,594 @@ public class Repository {
         }
     }
 
+    /**Applies the changes introduced by the given commit on top of the current
+     * commit, and makes a new commit with the same message.
+     * The changes are merged in memory with the parent of the picked commit as
+     * the split point, and the working directory is written once at the end,
+     * only for the files that changed. Conflicts are handled as in merge. */
+    static void cherryPick(String commitID) {
+        checkRepo();
+        HashMap<String, String> stagingMap = loadStagingArea();
+        if (!stagingMap.isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+        Commit picked = Commit.load(commitID);
+        Commit curCommit = getCurCommit();
+        FileTree baseTree = picked.getFirstParentID() == null
+                ? new FileTree() : Commit.load(picked.getFirstParentID()).getFileTree();
+
+        TreeMerge merge = new TreeMerge(baseTree, curCommit.getFileTree(), picked.getFileTree());
+        Commit newCommit = new Commit(picked.getMessage(), curCommit, null, merge.getChanges());
+        untrackedFailCase(newCommit.getFileTree());
+        newCommit.save();
+        writeWorkingTree(curCommit.getFileTree(), newCommit.getFileTree());
+        updatePointers(newCommit.getCommitID(), RefLog.Action.CHERRY_PICK);
+        if (merge.isConflicted()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /**Replays the commits of the current branch since its split point with the
+     * given branch on top of the head of the given branch, and moves the
+     * current branch to the last replayed commit.
+     * The commits replayed are those reachable from HEAD but not from the
+     * given branch (MergeBase.range), oldest first. Merge commits among them
+     * are skipped, as in git rebase. Each other commit is applied as a
+     * cherry-pick, with the tree of its first parent as the merge base, and
+     * a commit whose changes are already upstream is dropped.
+     * Every step is a merge in memory; the new commits are only saved once
+     * they all exist, and the working directory is written once at the end. */
+    static void rebase(String branchName) {
+        checkRepo();
+        HashMap<String, String> stagingMap = loadStagingArea();
+        if (!stagingMap.isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+        Commit curCommit = getCurCommit();
+        Commit upstream = getCommitFromBranch(branchName);
+        Commit splitCommit = Commit.getSplitPoint(curCommit, upstream);
+        if (splitCommit.getCommitID().equals(upstream.getCommitID())) {
+            System.out.println("Current branch is up to date.");
+            return;
+        }
+
+        // the commits to replay, oldest first: those reachable from HEAD but
+        // not from upstream, without merge commits, as in git rebase
+        CommitGraph graph = CommitGraph.load();
+        List<Commit> toReplay = new ArrayList<>();
+        for (String id : new MergeBase(graph).range(upstream.getCommitID(),
+                curCommit.getCommitID())) {
+            if (graph.get(id).secondParentID == null) {
+                toReplay.add(Commit.load(id));
+            }
+        }
+
+        List<Commit> newCommits = new ArrayList<>();
+        Commit onto = upstream;
+        boolean conflicted = false;
+        for (Commit c : toReplay) {
+            // each commit is applied as a cherry-pick: its own change from its parent
+            FileTree baseTree = c.getFirstParentID() == null
+                    ? new FileTree() : Commit.load(c.getFirstParentID()).getFileTree();
+            TreeMerge merge = new TreeMerge(baseTree, onto.getFileTree(), c.getFileTree());
+            if (merge.getChanges().isEmpty()) {
+                continue;
+            }
+            onto = new Commit(c.getMessage(), onto, null, merge.getChanges());
+            newCommits.add(onto);
+            conflicted |= merge.isConflicted();
+        }
+
+        untrackedFailCase(onto.getFileTree());
+        for (Commit c : newCommits) {
+            c.save();
+        }
+        writeWorkingTree(curCommit.getFileTree(), onto.getFileTree());
+        updatePointers(onto.getCommitID(), RefLog.Action.REBASE);
+        if (toReplay.isEmpty()) {
+            System.out.println("Current branch fast-forwarded.");
+        }
+        if (conflicted) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /**A helper method for the commands that build commits in memory.
+     * It turns a working directory that matches the FROM tree into the TO tree,
+     * touching only the files whose blob differs, and cleans the staging area.
+     * Files outside the sparse checkout are left alone.*/
+    private static void writeWorkingTree(FileTree from, FileTree to) {
+        long start = Trace.start();
+        for (String fileName : to.changedFiles(from)) {
+            if (!Sparse.includes(fileName)) {
+                continue;
+            }
+            String blobID = to.get(fileName);
+            if (blobID != null) {
+                Blob.copyContentToFile(fileName, blobID);
+            } else {
+                Utils.restrictedDelete(Utils.join(cwd(), fileName));
+            }
+        }
+        saveStagingArea(new HashMap<>());
+        Trace.end("write-working-tree", start);
+    }
+
+    /**Saves the staging area and the changes to tracked files in the working
+     * directory, then brings them back to the head commit.
+     * As in real Git, a stash entry is two commits: the index commit, whose
+     * tree is the head commit with the staging area applied, and the working
+     * commit, whose parents are the head commit and the index commit, and
+     * whose tree is the index tree with the working files applied.
+     * Both trees are built from the head tree with withChanges, so only the
+     * tree nodes on the paths of changed files are written, and a blob that is already in
+     * the store is not written again. */
+    static void stash() {
+        checkRepo();
+        Commit curCommit = getCurCommit();
+        HashMap<String, String> stagingMap = loadStagingArea();
+        FileTree indexTree = curCommit.getFileTree().withChanges(stagingMap);
+
+        // only tracked files are hashed: untracked files stay where they are,
+        // and files outside the sparse checkout keep their index version
+        HashMap<String, String> workingChanges = new HashMap<>();
+        for (Map.Entry<String, String> entry : indexTree.toMap().entrySet()) {
+            if (!Sparse.includes(entry.getKey())) {
+                continue;
+            }
+            File file = join(cwd(), entry.getKey());
+            if (!file.isFile()) {
+                workingChanges.put(entry.getKey(), "REMOVE");
+                continue;
+            }
+            Blob blob = new Blob(file);
+            if (!blob.getHashID().equals(entry.getValue())) {
+                blob.save();
+                workingChanges.put(entry.getKey(), blob.getHashID());
+            }
+        }
+        if (stagingMap.isEmpty() && workingChanges.isEmpty()) {
+            System.out.println("No local changes to save.");
+            return;
+        }
+        FileTree workingTree = indexTree.withChanges(workingChanges);
+
+        String branchName = getCurrentBranchName();
+        String on = (branchName == null ? "(no branch)" : branchName) + ": "
+                + curCommit.getCommitID().substring(0, 7) + " " + curCommit.getMessage();
+        Commit indexCommit = new Commit("index on " + on, curCommit, null, indexTree);
+        Commit workingCommit = new Commit("WIP on " + on, curCommit, indexCommit, workingTree);
+        // stashing the same state twice in one second gives the same commits
+        for (Commit c : List.of(indexCommit, workingCommit)) {
+            if (!c.isSaved()) {
+                c.save();
+            }
+        }
+        List<String> entries = loadStashEntries();
+        entries.add(0, workingCommit.getCommitID());
+        saveStashEntries(entries);
+
+        writeWorkingTree(workingTree, curCommit.getFileTree());
+        System.out.println("Saved working directory and index state " + workingCommit.getMessage());
+    }
+
+    /**Applies the newest stash entry on top of the head commit and drops it.
+     * The changes of the working commit relative to the commit the stash was
+     * made on are merged in memory, as in cherry-pick, and only the files
+     * they change are written. The staging area is restored the same way from
+     * the index commit. On a conflict the entry is kept. */
+    static void stashPop() {
+        checkRepo();
+        List<String> entries = loadStashEntries();
+        if (entries.isEmpty()) {
+            System.out.println("No stash entries found.");
+            System.exit(0);
+        }
+        if (!loadStagingArea().isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+        Commit workingCommit = Commit.load(entries.get(0));
+        FileTree baseTree = Commit.load(workingCommit.getFirstParentID()).getFileTree();
+        FileTree indexTree = Commit.load(workingCommit.getSecondParentID()).getFileTree();
+        Commit curCommit = getCurCommit();
+        FileTree curTree = curCommit.getFileTree();
+
+        TreeMerge merge = new TreeMerge(baseTree, curTree, workingCommit.getFileTree());
+        FileTree resultTree = curTree.withChanges(merge.getChanges());
+        // writeWorkingTree expects the changed files to match the head commit
+        for (String fileName : merge.getChanges().keySet()) {
+            if (!Sparse.includes(fileName)) {
+                continue;
+            }
+            File file = join(cwd(), fileName);
+            String blobID = curTree.get(fileName);
+            if (blobID != null && (!file.isFile() || !new Blob(file).getHashID().equals(blobID))) {
+                System.out.println("You have uncommitted changes.");
+                System.exit(0);
+            }
+        }
+        untrackedFailCase(resultTree);
+        writeWorkingTree(curTree, resultTree);
+        if (merge.isConflicted()) {
+            System.out.println("Encountered a merge conflict.");
+            return;
+        }
+
+        TreeMerge indexMerge = new TreeMerge(baseTree, curTree, indexTree);
+        if (!indexMerge.isConflicted()) {
+            saveStagingArea(new HashMap<>(indexMerge.getChanges()));
+        }
+        entries.remove(0);
+        saveStashEntries(entries);
+    }
+
+    /**Prints the stash entries, the newest first. */
+    static void stashList() {
+        checkRepo();
+        List<String> entries = loadStashEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            System.out.println("stash@{" + i + "}: " + Commit.load(entries.get(i)).getMessage());
+        }
+    }
+
+    static List<String> loadStashEntries() {
+        List<String> entries = new ArrayList<>();
+        if (stashFile().isFile()) {
+            for (String line : readContentsAsString(stashFile()).split("\n")) {
+                if (!line.isBlank()) {
+                    entries.add(line.trim());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void saveStashEntries(List<String> entries) {
+        if (entries.isEmpty()) {
+            stashFile().delete();
+        } else {
+            writeContents(stashFile(), String.join("\n", entries) + "\n");
+        }
+    }
+
     // remote ec!!! REMOTE
     /** Saves the given login information under the given remote name. */
     static void addRemote(String remoteName, String remoteDirPath) {
-        List<String> allRemoteNames = plainFilenamesIn(REMOTES_ADDRESS);
+        List<String> allRemoteNames = plainFilenamesIn(remotesFile());
         if (allRemoteNames.contains(remoteName)) {
             System.out.println("A remote with that name already exists.");
             System.exit(0);
         }
 
         String formattedPath = remoteDirPath.replace("/", File.separator);
-        File newRemote = join(REMOTES_ADDRESS, remoteName);
+        File newRemote = join(remotesFile(), remoteName);
         writeContents(newRemote, formattedPath);
     }
 
     /** Remove information associated with the given remote name. */
     static void rmRemote(String remoteName) {
-        List<String> allRemoteNames = plainFilenamesIn(REMOTES_ADDRESS);
+        List<String> allRemoteNames = plainFilenamesIn(remotesFile());
         if (!allRemoteNames.contains(remoteName)) {
             System.out.println("A remote with that name does not exist.");
             System.exit(0);
         }
 
-        File toDelete = join(REMOTES_ADDRESS, remoteName);
+        File toDelete = join(remotesFile(), remoteName);
         restrictedDelete(toDelete);
     }
 
 
+    /**Deletes the commits and blobs that can not be reached from any branch,
+     * remote branch or the staging area, and that are older than the grace period.
+     * Prints the number of objects removed and the bytes reclaimed. */
+    static void gc(long graceMillis) {
+        checkRepo();
+        GarbageCollector collector = new GarbageCollector(graceMillis);
+        System.out.println(collector.run());
+    }
+
+    /**Packs the loose objects, combining them with the small packs so that the
+     * pack sizes stay geometric, and rewrites the multi-pack index and
+     * the commit graph. Prints the number of objects and packs packed, see Maintenance. */
+    static void maintenance() {
+        checkRepo();
+        System.out.println(Maintenance.run());
+    }
+
+
+    /**Prints every line of a file in the head commit, or in the given commit,
+     * with the commit that last changed it, see Blame. */
+    static void blame(String rev, String fileName) {
+        checkRepo();
+        Commit commit = rev == null ? getCurCommit() : resolveRevision(rev);
+        Blame blame = Blame.of(commit.getCommitID(), fileName);
+        if (blame == null) {
+            System.out.println("File does not exist in that commit.");
+            System.exit(0);
+        }
+        blame.print(System.out, blobContent(commit.getBlobID(fileName)));
+    }
+
+    /**Prints the changes between two versions of the tracked files as a unified diff.
+     * With no commit, the staged version (the head commit with the staging area
+     * applied) is compared with the working directory; with one commit, that
+     * commit is compared with the working directory; with two, the two commits.
+     * A commit is a branch name, HEAD or a (possibly abbreviated) commit id.
+     * Files with the same blob ID on both sides are skipped without reading them,
+     * and between two commits the unchanged subtrees of the trees are not read at all. */
+    static void diff(String fromRev, String toRev, String fileName) {
+        checkRepo();
+        long start = Trace.start();
+        FileTree stagedTree = getCurCommit().getFileTree().withChanges(loadStagingArea());
+        FileTree fromTree = fromRev == null ? stagedTree : resolveRevision(fromRev).getFileTree();
+        TreeSet<String> fileNames = new TreeSet<>();
+        if (toRev != null) {
+            FileTree toTree = resolveRevision(toRev).getFileTree();
+            if (fileName != null) {
+                fileNames.add(fileName);
+            } else {
+                fileNames.addAll(fromTree.changedFiles(toTree));
+            }
+            for (String name : fileNames) {
+                String fromID = fromTree.get(name);
+                String toID = toTree.get(name);
+                if (!Objects.equals(fromID, toID)) {
+                    LineDiff.print(System.out, name, blobContent(fromID), blobContent(toID));
+                }
+            }
+        } else {
+            if (fileName != null) {
+                fileNames.add(fileName);
+            } else {
+                fileNames.addAll(fromTree.toMap().keySet());
+                fileNames.addAll(stagedTree.toMap().keySet());
+            }
+            for (String name : fileNames) {
+                String fromID = fromTree.get(name);
+                File file = join(cwd(), name);
+                // like status, only files that are tracked or staged count as present
+                ByteBuffer working = stagedTree.containsKey(name) && file.isFile()
+                        ? LineDiff.map(file) : null;
+                if (working == null ? fromID != null : !sha1(working).equals(fromID)) {
+                    LineDiff.print(System.out, name, blobContent(fromID), working);
+                }
+            }
+        }
+        Trace.end("diff", start);
+    }
+
+    /** Returns the content of the blob, or null for a file that does not exist.
+     *  Large files and chunked blobs are mapped rather than read onto the
+     *  heap, see Blob.mapContent. */
+    private static ByteBuffer blobContent(String blobID) {
+        return blobID == null ? null : Blob.mapContent(blobID);
+    }
+
+    /** Returns the commit named by HEAD, a reflog entry, a branch name, a tag or a commit id. */
+    private static Commit resolveRevision(String rev) {
+        if (rev.equals("HEAD")) {
+            return getCurCommit();
+        }
+        if (rev.contains("@{")) {
+            return Commit.load(resolveRefLogEntry(rev));
+        }
+        String branchHead = Refs.read(Refs.HEADS + rev);
+        if (branchHead != null) {
+            return Commit.load(branchHead);
+        }
+        String tagged = Refs.read(Refs.TAGS + rev);
+        if (tagged != null) {
+            return Commit.load(Tag.peel(tagged));
+        }
+        return Commit.load(rev);
+    }
+
+
+    /**Runs the filesystem watcher in the foreground until the process is stopped. */
+    static void watch() {
+        checkRepo();
+        Watcher.run();
+    }
+
+
+    /**Prints the value of a config key, or sets it when a value is given.
+     * Only the keys known to Config can be read or set. */
+    static void config(String key, String value) {
+        checkRepo();
+        if (!Config.isKnown(key)) {
+            System.out.println("Unknown config key.");
+            System.exit(0);
+        }
+        if (value == null) {
+            System.out.println(Config.get(key));
+        } else {
+            Config.set(key, value);
+        }
+    }
+
+
+    /**Sets the sparse checkout patterns, or removes them when PATTERNS is null,
+     * and brings the working directory in line with them: the tracked files
+     * that are now included are written from the staging area or the head
+     * commit, and the ones that are now excluded are deleted. If an excluded
+     * file has changes that would be lost, nothing is done. */
+    static void sparseCheckout(List<String> patterns) {
+        checkRepo();
+        HashMap<String, String> indexMap = getCurCommit().getFiles();
+        for (Map.Entry<String, String> entry : loadStagingArea().entrySet()) {
+            if (entry.getValue().equals("REMOVE")) {
+                indexMap.remove(entry.getKey());
+            } else {
+                indexMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Predicate<String> included = patterns == null ? name -> true : Sparse.filter(patterns);
+
+        List<String> excluded = new ArrayList<>();
+        for (Map.Entry<String, String> entry : indexMap.entrySet()) {
+            File file = join(cwd(), entry.getKey());
+            if (included.test(entry.getKey()) || !file.isFile()) {
+                continue;
+            }
+            if (!new Blob(file).getHashID().equals(entry.getValue())) {
+                System.out.println("You have uncommitted changes.");
+                System.exit(0);
+            }
+            excluded.add(entry.getKey());
+        }
+        Sparse.set(patterns);
+        for (Map.Entry<String, String> entry : indexMap.entrySet()) {
+            if (included.test(entry.getKey()) && !join(cwd(), entry.getKey()).isFile()) {
+                Blob.copyContentToFile(entry.getKey(), entry.getValue());
+            }
+        }
+        for (String fileName : excluded) {
+            Utils.restrictedDelete(join(cwd(), fileName));
+        }
+    }
+
+    /**Prints the sparse checkout patterns. */
+    static void sparseCheckoutList() {
+        checkRepo();
+        for (String line : Sparse.lines()) {
+            System.out.println(line);
+        }
+    }
+
+
+    /**Creates a worktree in the directory DIRNAME with the given branch
+     * checked out: a working directory with its own HEAD and staging area,
+     * sharing the objects and refs of this repository, see Worktree.
+     * A branch can only be checked out in one worktree at a time. */
+    static void worktreeAdd(String dirName, String branchName) {
+        checkRepo();
+        if (!Refs.exists(Refs.HEADS + branchName)) {
+            System.out.println("No such branch exists.");
+            System.exit(0);
+        }
+        if (branchName.equals(getCurrentBranchName()) || otherWorktreeOn(branchName) != null) {
+            System.out.println("That branch is already checked out in a worktree.");
+            System.exit(0);
+        }
+        File dir = new File(dirName);
+        if (!dir.isAbsolute()) {
+            dir = join(cwd(), dirName);
+        }
+        if (dir.exists() && !(dir.isDirectory() && Utils.isEmptyDirectory(dir))) {
+            System.out.println("That directory already exists.");
+            System.exit(0);
+        }
+        dir.mkdirs();
+        Worktree current = worktree;
+        useWorktree(Worktree.create(current.store, dir, branchName));
+        checkoutCommit(getCurCommit());
+        useWorktree(current);
+    }
+
+    /**Prints every worktree of the repository: its directory, head commit
+     * and branch, the main worktree first. */
+    static void worktreeList() {
+        checkRepo();
+        for (Worktree w : Worktree.all(commonPath())) {
+            String branch = w.branch();
+            String headID = branch == null ? w.head() : Refs.read(Refs.HEADS + branch);
+            System.out.println(w.workDir.getPath() + " " + headID.substring(0, 7) + " "
+                    + (branch == null ? "(detached HEAD)" : "[" + branch + "]"));
+        }
+    }
+
+    /**Returns the worktree other than the current one that has the given
+     * branch checked out, or null.*/
+    private static Worktree otherWorktreeOn(String branchName) {
+        for (Worktree w : Worktree.all(commonPath())) {
+            if (!w.gitletDir.equals(gitletDir()) && branchName.equals(w.branch())) {
+                return w;
+            }
+        }
+        return null;
+    }
+
+
+    /**Verifies that every object in the store matches its hash ID, that every
+     * reference points to an existing object, and reports dangling objects. */
+    static void fsck() {
+        checkRepo();
+        new Fsck().run();
+    }
+
+
     /**A helper method that returns the pointed commit in a branch
      * given by the name of the branch. */
     private static Commit getCommitFromBranch(String branchName) {
-        File headFile = Utils.join(BRANCHES_DIR, branchName);
-        if (!headFile.exists() || !headFile.isFile()) {
+        String commitID = Refs.read(Refs.HEADS + branchName);
+        if (commitID == null) {
             System.out.println("A branch with that name does not exist.");
             System.exit(0);
         }
-        String commitID = readContentsAsString(headFile);
         Commit targetCommit = Commit.load(commitID);
         return targetCommit;
     }
 
     /**A helper method that turns all the files in the current working directory,
-     * in fileName-blob pair hash map. */
-    private static HashMap<String, String> getWorkingDirFiles() {
-        List<String> cwdFiles = Utils.plainFilenamesIn(CWD);
+     * in fileName-blob pair hash map. Only the files in the sparse checkout
+     * are included.
+     * When gitlet watch is running, only the files changed since the last
+     * call are rehashed, see Watcher. */
+    static HashMap<String, String> getWorkingDirFiles() {
+        HashMap<String, String> workingDirFiles = Watcher.workingDirFiles();
+        if (workingDirFiles == null) {
+            return scanWorkingDir();
+        }
+        if (Sparse.isEnabled()) {
+            workingDirFiles.keySet().removeIf(fileName -> !Sparse.includes(fileName));
+        }
+        return workingDirFiles;
+    }
+
+    /**Hashes every file of the sparse checkout in the current working directory. */
+    static HashMap<String, String> scanWorkingDir() {
+        return scanWorkingDir(Sparse::includes);
+    }
+
+    /**Hashes every file in the current working directory whose name passes INCLUDE. */
+    static HashMap<String, String> scanWorkingDir(Predicate<String> include) {
+        long start = Trace.start();
+        List<String> cwdFiles = Utils.plainFilenamesIn(cwd());
         HashMap<String, String> workingDirFiles = new HashMap<>();
         for (String fileName: cwdFiles) {
-            File file = Utils.join(CWD, fileName);
-            if (file.isFile()) {
+            File file = Utils.join(cwd(), fileName);
+            if (file.isFile() && include.test(fileName)) {
                 Blob blob = new Blob(file);
                 String blobID = blob.getHashID();
                 workingDirFiles.put(fileName, blobID);
             }
         }
+        Trace.end("scan-working-dir", start);
         return workingDirFiles;
     }
 
     /**A helper method that updates HEAD and branch pointer after
-     * making a new commit.*/
-    private static void updatePointers(String newCommitID) {
-        String headContent = Utils.readContentsAsString(HEAD_FILE);
+     * making a new commit, and records the move in their reflogs.*/
+    private static void updatePointers(String newCommitID, RefLog.Action action) {
+        String headContent = Utils.readContentsAsString(headFile());
         if (headContent.length() < 6) {
             throw error("HEAD file content is invalid: " + headContent);
         }
 
+        String oldCommitID = getHEADcommitID();
         String firstLetters = headContent.substring(0, 4);
         if (firstLetters.equals("ref:")) {
             String path = headContent.substring(5).trim();
-            File headFile = Utils.join(GITLET_DIR, path);
-            Utils.writeContents(headFile, newCommitID);
+            Refs.write(path, newCommitID);
+            RefLog.append(path, oldCommitID, newCommitID, action);
         } else {
             // detached
-            Utils.writeContents(HEAD_FILE, newCommitID);
+            Utils.writeContents(headFile(), newCommitID);
         }
+        RefLog.append(RefLog.HEAD, oldCommitID, newCommitID, action);
     }
 
     /**A helper method that returns the commit pointed by HEAD.*/
@@ -756,7 +1502,7 @@ public class Repository {
 
     /** This is a helper method to get the commit ID pointed by the HEAD.*/
     private static String getHEADcommitID() {
-        String headContent = Utils.readContentsAsString(HEAD_FILE);
+        String headContent = Utils.readContentsAsString(headFile());
         if (headContent.length() < 6) {
             throw error("HEAD file content is invalid: " + headContent);
         }
@@ -764,8 +1510,10 @@ public class Repository {
         String firstLetters = headContent.substring(0, 4);
         if (firstLetters.equals("ref:")) {
             String path = headContent.substring(5).trim();
-            File headFile = Utils.join(GITLET_DIR, path);
-            String hashID = Utils.readContentsAsString(headFile);
+            String hashID = Refs.read(path);
+            if (hashID == null) {
+                throw error("HEAD points to a missing ref: " + path);
+            }
             return hashID;
         } else {
             return headContent;
@@ -777,12 +1525,16 @@ public class Repository {
 
     /** Persistence: this is a helper method for write the map object into index file. */
     private static void saveStagingArea(HashMap<String, String> files) {
-        writeObject(INDEX_FILE, files);
+        long start = Trace.start();
+        writeObject(indexFile(), files);
+        Trace.end("save-index", start);
     }
 
     /** Persistence: this is a helper method for read the map object from the index file. */
     static HashMap<String, String> loadStagingArea() {
-        HashMap<String, String> files = Utils.readObject(INDEX_FILE, HashMap.class);
+        long start = Trace.start();
+        HashMap<String, String> files = worktree.loadIndex();
+        Trace.end("load-index", start);
         return files;
     }
 
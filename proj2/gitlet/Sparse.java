@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** Sparse checkout: the patterns in .gitlet/info/sparse, one per line, limit
+ *  the tracked files that exist in the working directory. checkout, reset,
+ *  merge, cherry-pick, rebase and stash only write the files that match, and
+ *  status and the untracked-file check only hash the working files that
+ *  match, so their cost depends on the part of the tree that is checked out.
+ *  The files outside the patterns stay in the commits and the staging area
+ *  exactly as they are: they are neither reported as deleted nor as
+ *  modified, and the next commit keeps them unchanged.
+ *  A pattern is a glob (*.txt, src-?.java); a pattern starting with ! excludes
+ *  the files it matches, and the last pattern matching a file decides.
+ *  Blank lines and lines starting with # are ignored. Without the file,
+ *  every file is included.
+ *
+ *  @author Li Yanzhuo
+ */
+class Sparse {
+
+    private Sparse() {
+    }
+
+    static File sparseFile() {
+        return Repository.worktreePath("info", "sparse");
+    }
+
+    /** Read the patterns again on the next test, after they changed. */
+    static synchronized void reload() {
+        Repository.worktree().sparseFilter = null;
+    }
+
+    /** Whether sparse patterns are set. */
+    static boolean isEnabled() {
+        return sparseFile().isFile();
+    }
+
+    /** Whether FILENAME is in the sparse checkout. */
+    static boolean includes(String fileName) {
+        return filter().test(fileName);
+    }
+
+    /** Return the filter of the patterns of the worktree, read on first use. */
+    private static synchronized Predicate<String> filter() {
+        Worktree worktree = Repository.worktree();
+        if (worktree.sparseFilter == null) {
+            worktree.sparseFilter = isEnabled() ? filter(lines()) : name -> true;
+        }
+        return worktree.sparseFilter;
+    }
+
+    /** Return the test of a file name against the patterns LINES. */
+    static Predicate<String> filter(List<String> lines) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        boolean[] negated = new boolean[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            negated[i] = line.startsWith("!");
+            String glob = negated[i] ? line.substring(1) : line;
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        return fileName -> {
+            Path path = Paths.get(fileName);
+            boolean included = false;
+            for (int i = 0; i < matchers.size(); i++) {
+                if (matchers.get(i).matches(path)) {
+                    included = !negated[i];
+                }
+            }
+            return included;
+        };
+    }
+
+    /** Return the lines of the sparse file, or an empty list without one. */
+    static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        if (sparseFile().isFile()) {
+            for (String line : Utils.readContentsAsString(sparseFile()).split("\n")) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /** Replace the patterns with LINES, or remove the file if LINES is null. */
+    static void set(List<String> lines) {
+        if (lines == null) {
+            sparseFile().delete();
+        } else {
+            sparseFile().getParentFile().mkdirs();
+            Utils.writeContents(sparseFile(), String.join("\n", lines) + "\n");
+        }
+        reload();
+    }
+}
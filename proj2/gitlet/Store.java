@@ -0,0 +1,35 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+/** The shared .gitlet of a repository, where the objects, packs, refs and
+ *  settings are, and what has been read from it so far: the settings, the
+ *  multi-pack index, the mapped packed-refs file and the object database.
+ *  Every Worktree of a repository opened through the same Store sees the
+ *  same caches, and a Worktree of another repository has a Store of its
+ *  own, so switching between them (see Repository.useWorktree) never
+ *  mixes the caches of two repositories and needs no reset.
+ *  The caches are filled on first use by Config, MultiPackIndex, Refs and
+ *  ObjectType, which lock their class while doing so.
+ *
+ *  @author Li Yanzhuo
+ */
+class Store {
+    /** The shared .gitlet directory. */
+    final File dir;
+
+    /** The settings, see Config. */
+    Properties config;
+    /** The multi-pack index, see MultiPackIndex. */
+    MultiPackIndex multiPackIndex;
+    /** The mapped packed-refs file, see Refs. */
+    ByteBuffer packedRefs;
+    /** The object database, see ObjectType.database. */
+    ObjectDatabase database;
+
+    Store(File dir) {
+        this.dir = dir;
+    }
+}
@@ -0,0 +1,71 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/** An annotated tag: a named, dated message about a commit, stored as an
+ *  object of its own in the tags directory. The ref refs/tags/[name] of an annotated
+ *  tag holds the ID of this object, while the ref of a lightweight tag holds
+ *  the commit ID itself; peel turns either into the commit ID.
+ *
+ *  @author Li Yanzhuo
+ */
+class Tag implements Serializable {
+    private final String name;
+    private final String targetID;
+    private final String message;
+    private final long timestamp;
+    private final String hashID;
+
+    Tag(String name, String targetID, String message) {
+        this.name = name;
+        this.targetID = targetID;
+        this.message = message;
+        this.timestamp = Instant.now().getEpochSecond();
+        this.hashID = generateHashID();
+    }
+
+    String getHashID() {
+        return this.hashID;
+    }
+
+    String getTargetID() {
+        return this.targetID;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    String getMessage() {
+        return this.message;
+    }
+
+    /** Persistence: write the tag object through the object database. */
+    void save() {
+        ObjectType.TAG.writeObject(this.hashID, this);
+    }
+
+    static Tag load(String tagID) {
+        Tag tag = ObjectType.TAG.readObject(tagID, Tag.class);
+        if (tag == null) {
+            throw Utils.error("Can't find the tag: " + tagID);
+        }
+        return tag;
+    }
+
+    /** Return the commit ID that ID names: the target of an annotated tag,
+     *  or ID itself if it is not a tag object. */
+    static String peel(String id) {
+        return ObjectType.TAG.contains(id) ? load(id).targetID : id;
+    }
+
+    boolean hasValidHashID() {
+        return this.hashID != null && this.hashID.equals(generateHashID());
+    }
+
+    private String generateHashID() {
+        return Utils.sha1("tag", this.name, this.targetID, this.message,
+                String.valueOf(this.timestamp));
+    }
+}
@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Opt-in instrumentation for gitlet commands.
+ *  Tracing is turned on by the --trace flag before the command name, or by
+ *  the GITLET_TRACE environment variable: "1" prints to standard error, and any
+ *  other value is taken as a file to which one JSON line is appended per command.
+ *  While enabled, the persistence primitives in Utils count the objects and
+ *  bytes they read and write, sha1 records the bytes hashed and the time
+ *  spent hashing, and the phases marked with start/end record their count and
+ *  wall time. The report is written by a shutdown hook, so commands that end
+ *  with System.exit are reported as well.
+ *  When tracing is off every method returns after a single field check.
+ *
+ *  @author Li Yanzhuo
+ */
+class Trace {
+    static final String ENV_VARIABLE = "GITLET_TRACE";
+
+    private static volatile boolean enabled;
+    private static String command = "";
+    private static String destination;
+    private static long commandStart;
+
+    private static final LongAdder OBJECTS_LOADED = new LongAdder();
+    private static final LongAdder OBJECTS_SAVED = new LongAdder();
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder BYTES_WRITTEN = new LongAdder();
+    private static final LongAdder SHA1_CALLS = new LongAdder();
+    private static final LongAdder SHA1_BYTES = new LongAdder();
+    private static final LongAdder SHA1_NANOS = new LongAdder();
+    private static final LongAdder DIRECTORY_LISTINGS = new LongAdder();
+    /** Phase name to {count, total nanos}. */
+    private static final Map<String, LongAdder[]> PHASES = new ConcurrentHashMap<>();
+
+    /** Turn tracing on for COMMANDNAME if the flag was given or the environment
+     *  variable is set. Must be called once, before the command runs. */
+    static void init(String commandName, boolean traceFlag) {
+        String env = System.getenv(ENV_VARIABLE);
+        if (!traceFlag && (env == null || env.isEmpty())) {
+            return;
+        }
+        destination = (env == null || env.isEmpty() || env.equals("1")) ? null : env;
+        command = commandName;
+        commandStart = System.nanoTime();
+        enabled = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(Trace::report));
+    }
+
+    /** Return the start time of a phase, to be passed to end. */
+    static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /** Record one run of PHASE that began at START. */
+    static void end(String phase, long start) {
+        if (!enabled) {
+            return;
+        }
+        LongAdder[] stats = PHASES.computeIfAbsent(phase,
+                k -> new LongAdder[] {new LongAdder(), new LongAdder()});
+        stats[0].increment();
+        stats[1].add(System.nanoTime() - start);
+    }
+
+    /** An object read from a file by Utils.readObject: its bytes are counted here. */
+    static void objectLoaded(long bytes) {
+        if (enabled) {
+            OBJECTS_LOADED.increment();
+            BYTES_READ.add(bytes);
+        }
+    }
+
+    /** An object deserialized from bytes already counted by bytesRead,
+     *  when its loose file or pack entry was read. */
+    static void objectDeserialized() {
+        if (enabled) {
+            OBJECTS_LOADED.increment();
+        }
+    }
+
+    /** The bytes of a saved object are counted by writeContents. */
+    static void objectSaved() {
+        if (enabled) {
+            OBJECTS_SAVED.increment();
+        }
+    }
+
+    static void bytesRead(long bytes) {
+        if (enabled) {
+            BYTES_READ.add(bytes);
+        }
+    }
+
+    static void bytesWritten(long bytes) {
+        if (enabled) {
+            BYTES_WRITTEN.add(bytes);
+        }
+    }
+
+    static void hashed(long bytes, long start) {
+        if (enabled) {
+            SHA1_CALLS.increment();
+            SHA1_BYTES.add(bytes);
+            SHA1_NANOS.add(System.nanoTime() - start);
+        }
+    }
+
+    static void directoryListed() {
+        if (enabled) {
+            DIRECTORY_LISTINGS.increment();
+        }
+    }
+
+    /** Return the collected numbers as one line of JSON. */
+    static String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"command\":\"").append(escape(command)).append("\"")
+                .append(",\"wallNanos\":").append(System.nanoTime() - commandStart)
+                .append(",\"objectsLoaded\":").append(OBJECTS_LOADED.sum())
+                .append(",\"objectsSaved\":").append(OBJECTS_SAVED.sum())
+                .append(",\"bytesRead\":").append(BYTES_READ.sum())
+                .append(",\"bytesWritten\":").append(BYTES_WRITTEN.sum())
+                .append(",\"sha1Calls\":").append(SHA1_CALLS.sum())
+                .append(",\"sha1Bytes\":").append(SHA1_BYTES.sum())
+                .append(",\"sha1Nanos\":").append(SHA1_NANOS.sum())
+                .append(",\"directoryListings\":").append(DIRECTORY_LISTINGS.sum())
+                .append(",\"phases\":{");
+        boolean first = true;
+        for (Map.Entry<String, LongAdder[]> phase : new TreeMap<>(PHASES).entrySet()) {
+            if (!first) {
+                json.append(",");
+            }
+            first = false;
+            json.append("\"").append(escape(phase.getKey())).append("\":{\"count\":")
+                    .append(phase.getValue()[0].sum()).append(",\"nanos\":")
+                    .append(phase.getValue()[1].sum()).append("}");
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void report() {
+        String json = toJson();
+        if (destination == null) {
+            PrintStream err = System.err;
+            err.println(json);
+            err.flush();
+            return;
+        }
+        try (FileWriter writer = new FileWriter(new File(destination), true)) {
+            writer.write(json + System.lineSeparator());
+        } catch (IOException excp) {
+            System.err.println("Cannot write trace to " + destination + ": "
+                    + excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/** A three-way merge of file trees done entirely in memory.
+ *  Given the trees of the split point (base), the current commit (ours) and
+ *  the commit being merged in (theirs), it computes the staging changes that
+ *  turn ours into the merged tree, with the same rules as gitlet merge:
+ *  1.a file changed only in theirs takes their version (or is removed);
+ *  2.a file changed only in ours, or changed the same way in both, stays;
+ *  3.a file changed differently in both sides is a conflict, and gets a blob
+ *  holding both versions between conflict markers. A binary file cannot be
+ *  merged by lines, so a binary conflict keeps our version instead (their
+ *  version if we removed the file) and is only reported.
+ *  Only the files whose blob differs between base and theirs can need a change,
+ *  and those are found by comparing subtree hashes, so the cost of a merge
+ *  grows with the changed files rather than with the size of the trees.
+ *  Nothing is written to the working directory or the staging area; only the
+ *  blobs of conflicted files are saved, so that commits can refer to them.
+ *
+ *  @author Li Yanzhuo
+ */
+class TreeMerge {
+    /** Staging changes relative to ours: a blob ID, or "REMOVE". */
+    private final TreeMap<String, String> changes = new TreeMap<>();
+    private boolean conflicted;
+
+    TreeMerge(FileTree base, FileTree ours, FileTree theirs) {
+        for (String fileName : theirs.changedFiles(base)) {
+            String baseID = base.get(fileName);
+            String ourID = ours.get(fileName);
+            String theirID = theirs.get(fileName);
+            if (Objects.equals(ourID, theirID)) {
+                continue;
+            }
+            if (Objects.equals(baseID, ourID)) {
+                changes.put(fileName, theirID == null ? "REMOVE" : theirID);
+            } else {
+                Blob conflictBlob = conflictBlob(ourID, theirID);
+                if (conflictBlob != null) {
+                    conflictBlob.save();
+                    changes.put(fileName, conflictBlob.getHashID());
+                } else if (ourID == null) {
+                    changes.put(fileName, theirID);
+                }
+                conflicted = true;
+            }
+        }
+    }
+
+    /** Return the changes to apply to ours, in file name order. */
+    TreeMap<String, String> getChanges() {
+        return changes;
+    }
+
+    boolean isConflicted() {
+        return conflicted;
+    }
+
+    /** Return the blob written for a conflicted file: both versions between
+     *  conflict markers, a missing version counting as empty. Returns null if
+     *  either version is binary, as markers would only corrupt the file; the
+     *  content is joined as bytes, never decoded. */
+    static Blob conflictBlob(String curBlobID, String givenBlobID) {
+        Blob curBlob = curBlobID == null ? null : Blob.load(curBlobID);
+        Blob givenBlob = givenBlobID == null ? null : Blob.load(givenBlobID);
+        if ((curBlob != null && curBlob.isBinary())
+                || (givenBlob != null && givenBlob.isBinary())) {
+            return null;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.writeBytes("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+        if (curBlob != null) {
+            content.writeBytes(curBlob.getContent());
+        }
+        content.writeBytes("=======\n".getBytes(StandardCharsets.UTF_8));
+        if (givenBlob != null) {
+            content.writeBytes(givenBlob.getContent());
+        }
+        content.writeBytes(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+        return new Blob(content.toByteArray());
+    }
+}
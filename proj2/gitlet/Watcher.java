@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+
+/** An optional filesystem watcher that keeps the working directory scan
+ *  of status, checkout, reset and merge up to date without rehashing every file.
+ *  gitlet watch runs in the foreground and records the name of every file
+ *  created, modified or deleted in the working directory in a journal.
+ *  The commands that need the blob IDs of the working files then start
+ *  from the cache of the last scan and only rehash the files in the journal,
+ *  so their cost grows with the number of changes instead of the size of the tree.
+ *
+ *  Everything lives in .gitlet/watch of the worktree:
+ *  1.lock: held by the watcher while it runs. When nobody holds it, the
+ *  journal may be missing changes, and the commands scan the whole directory.
+ *  2.journal: one file name per line, or OVERFLOW when the watch service lost
+ *  events, in which case the next command scans the whole directory. Both
+ *  sides lock the journal while they append to it or consume it.
+ *  3.cache: the blob ID of every working file as of the last consumed journal.
+ *  4.cookie files: events are delivered asynchronously, so before reading the
+ *  journal a command creates a cookie file and waits until the watcher
+ *  journals it. Every change made before the cookie is then in the journal.
+ *
+ *  @author Li Yanzhuo
+ */
+class Watcher {
+    private static final String OVERFLOW = "OVERFLOW";
+    private static final String COOKIE_PREFIX = "cookie-";
+    /** How long a command waits for its cookie before scanning everything. */
+    private static final long COOKIE_TIMEOUT_MILLIS = 2000;
+
+    private Watcher() {
+    }
+
+    static File watchDir() {
+        return Repository.worktreePath("watch");
+    }
+
+    static File lockFile() {
+        return Utils.join(watchDir(), "lock");
+    }
+
+    static File journalFile() {
+        return Utils.join(watchDir(), "journal");
+    }
+
+    static File cacheFile() {
+        return Utils.join(watchDir(), "cache");
+    }
+
+    /** Run the watcher until the process is killed. */
+    static void run() {
+        watchDir().mkdirs();
+        try (RandomAccessFile lockFile = new RandomAccessFile(lockFile(), "rw");
+             FileLock lock = lockFile.getChannel().tryLock();
+             WatchService service = FileSystems.getDefault().newWatchService()) {
+            if (lock == null) {
+                System.out.println("A watcher is already running.");
+                System.exit(0);
+            }
+            Path cwd = Repository.cwd().toPath();
+            Path watchDir = watchDir().toPath();
+            cwd.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchDir.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+            // changes made before the keys were registered are unknown: start over
+            cacheFile().delete();
+            appendToJournal(List.of(OVERFLOW));
+            System.out.println("Watching the working directory; press Ctrl-C to stop.");
+
+            while (true) {
+                WatchKey key = service.take();
+                Set<String> entries = new LinkedHashSet<>();
+                while (key != null) {
+                    boolean fromCwd = key.watchable().equals(cwd);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            entries.add(OVERFLOW);
+                            continue;
+                        }
+                        String name = event.context().toString();
+                        if (fromCwd || name.startsWith(COOKIE_PREFIX)) {
+                            entries.add(name);
+                        }
+                    }
+                    key.reset();
+                    key = service.poll();
+                }
+                // the .gitlet directory itself is not a working file
+                entries.remove(Repository.gitletDir().getName());
+                if (!entries.isEmpty()) {
+                    appendToJournal(entries);
+                }
+            }
+        } catch (IOException | ClosedWatchServiceException excp) {
+            throw Utils.error("The watcher stopped: " + excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void appendToJournal(Collection<String> entries) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            sb.append(entry).append('\n');
+        }
+        try (RandomAccessFile journal = new RandomAccessFile(journalFile(), "rw")) {
+            FileLock lock = journal.getChannel().lock();
+            try {
+                journal.seek(journal.length());
+                journal.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /** Return the blob ID of every file in the working directory, rehashing
+     *  only the files journaled since the last call, or null if no watcher is
+     *  running or it did not answer in time, and the caller must scan everything.
+     *  The files outside the sparse checkout are included; the caller filters. */
+    @SuppressWarnings("unchecked")
+    static HashMap<String, String> workingDirFiles() {
+        if (!watchDir().isDirectory() || !isRunning()) {
+            return null;
+        }
+        long start = Trace.start();
+        String cookie = COOKIE_PREFIX + System.nanoTime();
+        File cookieFile = Utils.join(watchDir(), cookie);
+        try (RandomAccessFile journal = new RandomAccessFile(journalFile(), "rw")) {
+            Utils.writeContents(cookieFile, "");
+            List<String> entries = waitForCookie(journal.getChannel(), cookie);
+            if (entries == null) {
+                return null;
+            }
+            FileLock lock = journal.getChannel().lock();
+            try {
+                // the entries appended while waiting are consumed too
+                entries = readJournal(journal.getChannel());
+                HashMap<String, String> files;
+                if (cacheFile().isFile() && !entries.contains(OVERFLOW)) {
+                    files = Utils.readObject(cacheFile(), HashMap.class);
+                    for (String name : entries) {
+                        if (name.startsWith(COOKIE_PREFIX)) {
+                            continue;
+                        }
+                        File file = Utils.join(Repository.cwd(), name);
+                        if (file.isFile()) {
+                            files.put(name, new Blob(file).getHashID());
+                        } else {
+                            files.remove(name);
+                        }
+                    }
+                } else {
+                    // unfiltered, so the cache stays valid when the sparse patterns change
+                    files = Repository.scanWorkingDir(name -> true);
+                }
+                Utils.writeObject(cacheFile(), files);
+                journal.setLength(0);
+                Trace.end("watch-journal", start);
+                return files;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException excp) {
+            return null;
+        } finally {
+            cookieFile.delete();
+        }
+    }
+
+    /** Whether a watcher process holds the lock. */
+    private static boolean isRunning() {
+        try (RandomAccessFile lockFile = new RandomAccessFile(lockFile(), "rw");
+             FileLock lock = lockFile.getChannel().tryLock()) {
+            return lock == null;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Poll the journal until it contains COOKIE; null on timeout. */
+    private static List<String> waitForCookie(FileChannel channel, String cookie)
+            throws IOException {
+        long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            List<String> entries;
+            FileLock lock = channel.lock();
+            try {
+                entries = readJournal(channel);
+            } finally {
+                lock.release();
+            }
+            if (entries.contains(cookie)) {
+                return entries;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> readJournal(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.read(buffer, 0);
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        List<String> entries = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (!line.isEmpty()) {
+                entries.add(line);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,107 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/** Tests of the journal and cookie path of Watcher: gitlet watch runs in
+ *  another process on a temporary repository, as a user would run it, and
+ *  the commands of this process read what it journals. */
+public class WatcherTest {
+    private File dir;
+    private Process watcher;
+
+    @Before
+    public void startWatcher() throws IOException {
+        dir = Files.createTempDirectory("gitlet-watch").toFile();
+        Repository.useWorktree(new Worktree(dir));
+        Repository.init();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        watcher = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "gitlet.Main", "watch").directory(dir).redirectErrorStream(true).start();
+        // the watcher prints its first line once it holds the lock and watches
+        BufferedReader out = new BufferedReader(new InputStreamReader(watcher.getInputStream()));
+        assertTrue(out.readLine().startsWith("Watching"));
+    }
+
+    @After
+    public void stopWatcher() throws IOException, InterruptedException {
+        watcher.destroy();
+        watcher.waitFor();
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private File write(String name, String content) {
+        File file = Utils.join(dir, name);
+        Utils.writeContents(file, content);
+        return file;
+    }
+
+    @Test
+    public void firstCallScansEverything() {
+        File a = write("a.txt", "a");
+        HashMap<String, String> files = Watcher.workingDirFiles();
+        assertNotNull(files);
+        assertEquals(1, files.size());
+        assertEquals(new Blob(a).getHashID(), files.get("a.txt"));
+        assertEquals(0, Watcher.journalFile().length());
+    }
+
+    @Test
+    public void laterCallsOnlyRehashJournaledFiles() {
+        File a = write("a.txt", "a");
+        write("b.txt", "b");
+        assertNotNull(Watcher.workingDirFiles());
+
+        // a file only in the cache: kept, since no event says it changed
+        HashMap<String, String> cached = Watcher.workingDirFiles();
+        cached.put("ghost.txt", "0000");
+        Utils.writeObject(Watcher.cacheFile(), cached);
+
+        Utils.writeContents(a, "changed a");
+        File c = write("c.txt", "c");
+        Utils.join(dir, "b.txt").delete();
+        HashMap<String, String> files = Watcher.workingDirFiles();
+        assertNotNull(files);
+        assertEquals(new Blob(a).getHashID(), files.get("a.txt"));
+        assertEquals(new Blob(c).getHashID(), files.get("c.txt"));
+        assertFalse(files.containsKey("b.txt"));
+        assertEquals("0000", files.get("ghost.txt"));
+        assertEquals(0, Watcher.journalFile().length());
+    }
+
+    @Test
+    public void widenedSparsePatternsSeeTheOtherFiles() {
+        write("a.txt", "a");
+        File b = write("b.md", "b");
+        Sparse.set(List.of("*.txt"));
+        assertEquals(Set.of("a.txt"), Repository.getWorkingDirFiles().keySet());
+
+        Sparse.set(List.of("*.txt", "*.md"));
+        HashMap<String, String> files = Repository.getWorkingDirFiles();
+        assertEquals(Set.of("a.txt", "b.md"), files.keySet());
+        assertEquals(new Blob(b).getHashID(), files.get("b.md"));
+    }
+
+    @Test
+    public void noWatcherMeansFullScan() throws InterruptedException {
+        watcher.destroy();
+        watcher.waitFor();
+        assertNull(Watcher.workingDirFiles());
+    }
+}
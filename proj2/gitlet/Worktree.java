@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** A working directory of a repository, and the paths of its .gitlet.
+ *  A repository can have several worktrees that share one object store and
+ *  one set of refs, so that different branches are checked out side by side
+ *  without copying the store. The main worktree is the one made by init:
+ *  its .gitlet holds everything. A worktree made by worktree add has a
+ *  .gitlet of its own with only the files that belong to one working
+ *  directory: HEAD, index, logs/HEAD, info/sparse and watch. Its commondir
+ *  file holds the path of the main .gitlet, where everything else (objects,
+ *  packs, refs, branch reflogs, config, stash, caches) is read and written.
+ *  The working directories of the extra worktrees are listed, one per line,
+ *  in the worktrees file of the main .gitlet.
+ *  Repository runs the commands in one Worktree at a time; a program can
+ *  drive several worktrees by switching with Repository.useWorktree.
+ *  A Worktree holds what a run has read of its own .gitlet (the sparse
+ *  patterns and the large file hashes), and its Store what has been read
+ *  of the shared one, so each worktree keeps its caches across switches.
+ *
+ *  @author Li Yanzhuo
+ */
+class Worktree {
+    static final String COMMONDIR = "commondir";
+    static final String WORKTREES = "worktrees";
+
+    /** The working directory. */
+    final File workDir;
+    /** The .gitlet directory of the working directory. */
+    final File gitletDir;
+    /** The .gitlet directory shared by all the worktrees of the repository. */
+    final File commonDir;
+    /** The shared .gitlet and its caches. */
+    final Store store;
+
+    /** The filter of the sparse patterns, see Sparse, or null before first use. */
+    Predicate<String> sparseFilter;
+    /** The cached hashes of the large working files, see LargeFiles, or null
+     *  before first use. */
+    HashMap<String, String> largeFileHashes;
+
+    /** The worktree at WORKDIR, with a Store of its own. */
+    Worktree(File workDir) {
+        this(workDir, null);
+    }
+
+    /** The worktree at WORKDIR, sharing the caches of STORE if it is the
+     *  store of the same repository. */
+    Worktree(File workDir, Store store) {
+        this.workDir = workDir.getAbsoluteFile();
+        this.gitletDir = Utils.join(this.workDir, ".gitlet");
+        File pointer = Utils.join(gitletDir, COMMONDIR);
+        this.commonDir = pointer.isFile()
+                ? new File(Utils.readContentsAsString(pointer).trim()) : gitletDir;
+        this.store = store != null && store.dir.equals(commonDir) ? store : new Store(commonDir);
+    }
+
+    boolean isMain() {
+        return gitletDir.equals(commonDir);
+    }
+
+    File headFile() {
+        return Utils.join(gitletDir, "HEAD");
+    }
+
+    File indexFile() {
+        return Utils.join(gitletDir, "index");
+    }
+
+    /** The name of the per-worktree ref REF (such as HEAD) in messages and
+     *  reflog names: REF itself in the main worktree, as in Git. */
+    String refName(String ref) {
+        return isMain() ? ref : WORKTREES + "/" + workDir.getName() + "/" + ref;
+    }
+
+    /** Return the content of HEAD: "ref: [ref name]", or a commit ID when detached. */
+    String head() {
+        return Utils.readContentsAsString(headFile()).trim();
+    }
+
+    @SuppressWarnings("unchecked")
+    HashMap<String, String> loadIndex() {
+        return Utils.readObject(indexFile(), HashMap.class);
+    }
+
+    /** Return the branch checked out in this worktree, or null if HEAD is detached. */
+    String branch() {
+        String headContent = head();
+        if (!headContent.startsWith("ref: " + Refs.HEADS)) {
+            return null;
+        }
+        return headContent.substring(("ref: " + Refs.HEADS).length());
+    }
+
+    /** Return every worktree of the repository whose .gitlet is COMMONDIR:
+     *  the main one first, then the extra ones that still exist. */
+    static List<Worktree> all(File commonDir) {
+        List<Worktree> worktrees = new ArrayList<>();
+        worktrees.add(new Worktree(commonDir.getParentFile()));
+        File list = Utils.join(commonDir, WORKTREES);
+        if (list.isFile()) {
+            for (String line : Utils.readContentsAsString(list).split("\n")) {
+                if (!line.isEmpty() && Utils.join(line, ".gitlet", COMMONDIR).isFile()) {
+                    worktrees.add(new Worktree(new File(line)));
+                }
+            }
+        }
+        return worktrees;
+    }
+
+    /** Make a worktree of the repository of STORE at WORKDIR, with HEAD on
+     *  BRANCHNAME and an empty staging area, and register it. The working
+     *  files are not written. */
+    static Worktree create(Store store, File workDir, String branchName) {
+        File commonDir = store.dir;
+        File gitletDir = Utils.join(workDir, ".gitlet");
+        gitletDir.mkdirs();
+        Utils.writeContents(Utils.join(gitletDir, COMMONDIR), commonDir.getAbsolutePath());
+        Worktree worktree = new Worktree(workDir, store);
+        Utils.writeContents(worktree.headFile(), "ref: " + Refs.HEADS + branchName);
+        Utils.writeObject(worktree.indexFile(), new HashMap<String, String>());
+
+        StringBuilder list = new StringBuilder();
+        for (Worktree other : all(commonDir)) {
+            if (!other.isMain()) {
+                list.append(other.workDir.getPath()).append('\n');
+            }
+        }
+        list.append(worktree.workDir.getPath()).append('\n');
+        Utils.writeContents(Utils.join(commonDir, WORKTREES), list.toString());
+        return worktree;
+    }
+}